@@ -0,0 +1,251 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+/**
+ * <p>
+ * This class adjust the size limit of {@link JdbdSessionPool} between {@link #lowerBound()} and {@link PoolConfig#maxSize()}
+ * from observed statistic of each window :
+ * <ul>
+ *     <li>arrival rate : the count of acquiring per second</li>
+ *     <li>hold time : the duration from borrowing to releasing , it contain the server latency of statements</li>
+ *     <li>acquire wait : the duration from acquiring to receiving session , the timed-out acquiring count whole timeout</li>
+ *     <li>utilization : (borrowed sessions + pending borrowers) / size limit , capped at 1</li>
+ * </ul>
+ * The statistics are smoothed by EWMA. The target size is Little's law : {@code arrival rate * hold time * headroom},
+ * if acquire wait exceed {@link PoolConfig#targetAcquireWait()} and utilization is high or borrowers are pending ,
+ * the limit grows by one step at least.
+ * <br/>
+ * <p>
+ * Hysteresis : the limit grows immediately , but shrinks by one step only after the target is less than
+ * {@link #SHRINK_RATIO} of limit in {@link #SHRINK_WINDOWS} consecutive windows, so the limit don't oscillate.
+ * <br/>
+ * <p>
+ * The decisions are exposed as metrics, for example : {@link #limit()} , {@link #growCount()} , {@link #shrinkCount()}.
+ * This class isn't thread-safe except the getters , {@link #evaluate(long, long, long, long, long, int, int)} is invoked by one thread.
+ * <br/>
+ *
+ * @see PoolConfig#adaptiveInterval()
+ * @since 1.0
+ */
+public final class AdaptiveSizer {
+
+    static final double HEADROOM = 1.2;
+
+    static final double SHRINK_RATIO = 0.75;
+
+    static final int SHRINK_WINDOWS = 3;
+
+    static final double HIGH_UTILIZATION = 0.9;
+
+    /**
+     * the weight of current window.
+     */
+    private static final double ALPHA = 0.3;
+
+    private final int lowerBound;
+
+    private final int upperBound;
+
+    private final long targetWaitNanos;
+
+    private volatile int limit;
+
+    private volatile double arrivalRate;
+
+    private volatile double holdMillis;
+
+    private volatile double waitMillis;
+
+    private volatile double utilization;
+
+    private volatile int targetSize;
+
+    private volatile long growCount;
+
+    private volatile long shrinkCount;
+
+    private int shrinkStreak;
+
+    private long lastNanos;
+
+    private long lastAcquireCount;
+
+    private long lastWaitNanos;
+
+    private long lastHoldNanos;
+
+    private long lastReleaseCount;
+
+    AdaptiveSizer(PoolConfig config, long nowNanos) {
+        this.lowerBound = Math.max(1, config.minIdle());
+        this.upperBound = config.maxSize();
+        this.targetWaitNanos = config.targetAcquireWait().toNanos();
+        // start from max size , so cold start don't wait growing
+        this.limit = this.targetSize = this.upperBound;
+        this.lastNanos = nowNanos;
+    }
+
+    /**
+     * @return the current size limit of pool.
+     */
+    public int limit() {
+        return this.limit;
+    }
+
+    public int lowerBound() {
+        return this.lowerBound;
+    }
+
+    /**
+     * @return the target size of last window , before hysteresis.
+     */
+    public int targetSize() {
+        return this.targetSize;
+    }
+
+    /**
+     * @return the smoothed count of acquiring per second.
+     */
+    public double arrivalRate() {
+        return this.arrivalRate;
+    }
+
+    /**
+     * @return the smoothed hold time in milliseconds.
+     */
+    public double holdMillis() {
+        return this.holdMillis;
+    }
+
+    /**
+     * @return the smoothed acquire wait in milliseconds.
+     */
+    public double waitMillis() {
+        return this.waitMillis;
+    }
+
+    /**
+     * @return the smoothed utilization , in [0,1] .
+     */
+    public double utilization() {
+        return this.utilization;
+    }
+
+    public long growCount() {
+        return this.growCount;
+    }
+
+    public long shrinkCount() {
+        return this.shrinkCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ limit : %s , targetSize : %s , arrivalRate : %.2f , holdMillis : %.2f , waitMillis : %.2f , utilization : %.2f , growCount : %s , shrinkCount : %s , hash : %s]",
+                getClass().getName(),
+                this.limit,
+                this.targetSize,
+                this.arrivalRate,
+                this.holdMillis,
+                this.waitMillis,
+                this.utilization,
+                this.growCount,
+                this.shrinkCount,
+                System.identityHashCode(this)
+        );
+    }
+
+    /**
+     * <p>
+     * Evaluate the window since last invoking , the arguments are cumulative counters of pool.
+     * <br/>
+     *
+     * @param borrowedCount the count of borrowed sessions now.
+     * @param pendingCount  the count of borrowers that are waiting now , see {@link JdbdSessionPool#pendingCount()}
+     * @return the change of limit , positive : grow , negative : shrink , zero : not changed.
+     */
+    int evaluate(final long nowNanos, final long acquireCount, final long waitNanos, final long holdNanos,
+                 final long releaseCount, final int borrowedCount, final int pendingCount) {
+        final long windowNanos = nowNanos - this.lastNanos;
+        if (windowNanos <= 0) {
+            return 0;
+        }
+        final long acquires = acquireCount - this.lastAcquireCount;
+        final long releases = releaseCount - this.lastReleaseCount;
+        final long waits = waitNanos - this.lastWaitNanos;
+        final long holds = holdNanos - this.lastHoldNanos;
+
+        this.lastNanos = nowNanos;
+        this.lastAcquireCount = acquireCount;
+        this.lastReleaseCount = releaseCount;
+        this.lastWaitNanos = waitNanos;
+        this.lastHoldNanos = holdNanos;
+
+        final int oldLimit = this.limit;
+
+        final double arrivalRate, holdMillis, waitMillis, utilization;
+        arrivalRate = ewma(this.arrivalRate, acquires * 1e9 / windowNanos);
+        holdMillis = releases > 0 ? ewma(this.holdMillis, holds / 1e6 / releases) : this.holdMillis;
+        waitMillis = ewma(this.waitMillis, acquires > 0 ? waits / 1e6 / acquires : 0.0);
+        // pending borrowers are demand that the borrowed count can't show
+        utilization = ewma(this.utilization, Math.min(1.0, (double) (borrowedCount + pendingCount) / oldLimit));
+
+        this.arrivalRate = arrivalRate;
+        this.holdMillis = holdMillis;
+        this.waitMillis = waitMillis;
+        this.utilization = utilization;
+
+        // Little's law : L = λ * W
+        int target = (int) Math.ceil(arrivalRate * holdMillis / 1000.0 * HEADROOM);
+        if (waitMillis * 1e6 > this.targetWaitNanos && (utilization >= HIGH_UTILIZATION || pendingCount > 0)) {
+            target = Math.max(target, oldLimit + step(oldLimit));
+        }
+        target = Math.max(this.lowerBound, Math.min(this.upperBound, target));
+        this.targetSize = target;
+
+        final int newLimit;
+        if (target > oldLimit) {
+            newLimit = target;
+            this.shrinkStreak = 0;
+            this.growCount++;
+        } else if (target < oldLimit * SHRINK_RATIO && ++this.shrinkStreak >= SHRINK_WINDOWS) {
+            newLimit = Math.max(target, oldLimit - step(oldLimit));
+            this.shrinkStreak = 0;
+            this.shrinkCount++;
+        } else {
+            if (target >= oldLimit * SHRINK_RATIO) {
+                this.shrinkStreak = 0;
+            }
+            newLimit = oldLimit;
+        }
+        this.limit = newLimit;
+        return newLimit - oldLimit;
+    }
+
+    /*################################## blow private method ##################################*/
+
+    private static double ewma(double old, double current) {
+        return ALPHA * current + (1.0 - ALPHA) * old;
+    }
+
+    private static int step(int limit) {
+        return Math.max(1, limit >> 2);
+    }
+
+
+}
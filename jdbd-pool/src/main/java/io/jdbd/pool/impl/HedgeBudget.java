@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * This class is the token bucket that bound the extra load of hedged read.
+ * Each hedgeable request deposit {@code ratio} token , each hedge withdraw one token ,
+ * so the hedges never exceed {@code ratio} of requests plus a small burst.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class HedgeBudget {
+
+    private static final long TOKEN = 1000L;
+
+    private static final long MAX_BURST = 10;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    /**
+     * the milli-tokens
+     */
+    private final AtomicLong balance = new AtomicLong(0);
+
+    /**
+     * @param ratio (0,1] , for example : 0.05 , at most 5% extra request.
+     */
+    HedgeBudget(double ratio) {
+        this.deposit = Math.max(1L, Math.round(ratio * TOKEN));
+        this.capacity = MAX_BURST * TOKEN;
+    }
+
+    void deposit() {
+        final AtomicLong balance = this.balance;
+        long old;
+        do {
+            old = balance.get();
+            if (old >= this.capacity) {
+                return;
+            }
+        } while (!balance.compareAndSet(old, Math.min(this.capacity, old + this.deposit)));
+    }
+
+    /**
+     * @return true : one token is withdrawn.
+     */
+    boolean tryWithdraw() {
+        final AtomicLong balance = this.balance;
+        long old;
+        do {
+            old = balance.get();
+            if (old < TOKEN) {
+                return false;
+            }
+        } while (!balance.compareAndSet(old, old - TOKEN));
+        return true;
+    }
+
+    /**
+     * refund the token when hedge isn't sent , for example : no second replica.
+     */
+    void refund() {
+        this.balance.addAndGet(TOKEN);
+    }
+
+    /**
+     * @return the count of whole tokens
+     */
+    long tokens() {
+        return this.balance.get() / TOKEN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ deposit : %s , balance : %s , hash : %s]",
+                getClass().getName(),
+                this.deposit,
+                this.balance.get(),
+                System.identityHashCode(this)
+        );
+    }
+
+
+}
@@ -0,0 +1,752 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.DriverVersion;
+import io.jdbd.JdbdException;
+import io.jdbd.lang.Nullable;
+import io.jdbd.pool.PoolLocalDatabaseSession;
+import io.jdbd.pool.ReadWriteSplittingFactory;
+import io.jdbd.result.CurrentRow;
+import io.jdbd.session.*;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * This class is a implementation of {@link ReadWriteSplittingFactory} that manage one primary and N replicas.
+ * <br/>
+ * <p>
+ * The session that is created with {@link Option#READ_ONLY_SESSION} true is routed to replica , other sessions are
+ * routed to primary. The replica is selected by power-of-two-choices : select two random available replicas and pick the one
+ * whose {@code (latency EWMA + 1) * (pending + 1)} is lower , so the slow replica receive less traffic without herding.
+ * <br/>
+ * <p>
+ * Replica health :
+ * <ul>
+ *     <li>the replica is evicted for {@link Builder#evictDuration(Duration)} after {@link Builder#evictThreshold(int)}
+ *     consecutive failures of opening session , and then is re-admitted</li>
+ *     <li>optional replication-lag ceiling , the replica whose lag exceed ceiling isn't selected ,
+ *     see {@link Builder#lagCeiling(Duration, ReplicaLagProbe)}</li>
+ * </ul>
+ * If no replica is available , the read-only session is routed to primary , unless {@link Builder#fallbackToPrimary(boolean)} is false.
+ * <br/>
+ *
+ * @since 1.0
+ */
+public final class JdbdReadWriteSplittingFactory implements ReadWriteSplittingFactory {
+
+    /**
+     * @param primary the factory of primary
+     */
+    public static Builder builder(DatabaseSessionFactory primary) {
+        return new Builder(primary);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbdReadWriteSplittingFactory.class);
+
+    /**
+     * the min count of latency samples before hedging , the percentile of few samples is noise.
+     */
+    static final long MIN_HEDGE_SAMPLES = 32;
+
+    private static final Function<Option<?>, ?> READ_ONLY_FUNC = option -> option == Option.READ_ONLY_SESSION ? Boolean.TRUE : null;
+
+    private final String name;
+
+    private final DatabaseSessionFactory primary;
+
+    private final ReplicaFactory[] replicas;
+
+    private final long lagCeilingMillis;
+
+    private final ReplicaLagProbe lagProbe;
+
+    /**
+     * the timeout of lag probe , {@link Duration#ZERO} : no background probe.
+     */
+    private final Duration probeInterval;
+
+    /**
+     * 0 : lag sample never is stale.
+     */
+    private final long lagStaleNanos;
+
+    private final boolean fallbackToPrimary;
+
+    private final long stickyNanos;
+
+    private final double hedgePercentile;
+
+    private final HedgeBudget hedgeBudget;
+
+    private final LatencyHistogram hedgeHistogram;
+
+    private final Disposable probeTask;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final LongAdder fallbackCount = new LongAdder();
+
+    private final LongAdder hedgeCount = new LongAdder();
+
+    private final LongAdder hedgeDeniedCount = new LongAdder();
+
+    private JdbdReadWriteSplittingFactory(Builder builder) {
+        this.name = builder.name;
+        this.primary = builder.primary;
+        this.lagCeilingMillis = builder.lagCeiling.toMillis();
+        this.lagProbe = builder.lagProbe;
+        this.probeInterval = builder.probeInterval;
+        // miss two probes
+        this.lagStaleNanos = this.lagProbe == null ? 0L : builder.probeInterval.toNanos() * 2;
+        this.fallbackToPrimary = builder.fallbackToPrimary;
+        this.stickyNanos = builder.readYourWritesWindow.toNanos();
+        this.hedgePercentile = builder.hedgePercentile;
+        if (builder.hedgeBudgetRatio > 0.0) {
+            this.hedgeBudget = new HedgeBudget(builder.hedgeBudgetRatio);
+            this.hedgeHistogram = new LatencyHistogram();
+        } else {
+            this.hedgeBudget = null;
+            this.hedgeHistogram = null;
+        }
+
+        final long evictNanos = builder.evictDuration.toNanos();
+        final PoolConfig hedgePoolConfig = this.hedgeBudget == null ? null : builder.hedgePoolConfig;
+        final List<DatabaseSessionFactory> replicaList = builder.replicaList;
+        final ReplicaFactory[] replicas = new ReplicaFactory[replicaList.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new ReplicaFactory(replicaList.get(i), builder.evictThreshold, evictNanos, hedgePoolConfig);
+        }
+        this.replicas = replicas;
+
+        final long probeMillis = builder.probeInterval.toMillis();
+        if (this.lagProbe != null && probeMillis > 0) {
+            this.probeTask = Schedulers.parallel()
+                    .schedulePeriodically(this::probeLag, 0, probeMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.probeTask = null;
+        }
+    }
+
+    /**
+     * @return primary factory
+     */
+    @Override
+    public DatabaseSessionFactory readWriteFactory(Function<Option<?>, ?> func) {
+        return this.primary;
+    }
+
+    /**
+     * @return the replica that is selected by power-of-two-choices , or primary if no replica is available and
+     * {@link Builder#fallbackToPrimary(boolean)} is true.
+     * @throws JdbdException throw when no replica is available and don't fall back to primary.
+     */
+    @Override
+    public DatabaseSessionFactory readOnlyFactory(Function<Option<?>, ?> func) throws JdbdException {
+        final ReplicaFactory replica = selectReplica(null);
+        if (replica != null) {
+            return replica;
+        } else if (this.fallbackToPrimary) {
+            this.fallbackCount.increment();
+            return this.primary;
+        }
+        throw new JdbdException(String.format("%s no available replica", this.name));
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> localSession() {
+        return this.primary.localSession();
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> localSession(@Nullable String name, Function<Option<?>, ?> optionFunc) {
+        if (!isReadOnly(optionFunc)) {
+            return this.primary.localSession(name, optionFunc);
+        }
+        final DatabaseSessionFactory factory;
+        try {
+            factory = readOnlyFactory(optionFunc);
+        } catch (JdbdException e) {
+            return Mono.error(e);
+        }
+        return factory.localSession(name, optionFunc);
+    }
+
+    /**
+     * @return the session of primary , because XA transaction usually write.
+     */
+    @Override
+    public Publisher<RmDatabaseSession> rmSession() {
+        return this.primary.rmSession();
+    }
+
+    /**
+     * @return the session of primary , because XA transaction usually write.
+     */
+    @Override
+    public Publisher<RmDatabaseSession> rmSession(@Nullable String name, Function<Option<?>, ?> optionFunc) {
+        return this.primary.rmSession(name, optionFunc);
+    }
+
+    /**
+     * @see #routingSession(String, Function)
+     */
+    public Publisher<LocalDatabaseSession> routingSession() {
+        return routingSession(null, Option.EMPTY_OPTION_FUNC);
+    }
+
+    /**
+     * <p>
+     * Create the session that route statement automatically , so application don't select factory at call site :
+     * <ul>
+     *     <li>autocommit read-only statement is routed to replica</li>
+     *     <li>write statement and any statement in transaction are routed to primary</li>
+     *     <li>after write or commit , read-only statement is still routed to primary in the window of
+     *     {@link Builder#readYourWritesWindow(Duration)} , so application read its own writes.</li>
+     * </ul>
+     * The session of replica is opened with the session of primary , if no replica is available or the opening fails ,
+     * all statements are routed to primary.
+     * <br/>
+     *
+     * @param optionFunc the option function of both primary session and replica session.
+     */
+    public Publisher<LocalDatabaseSession> routingSession(@Nullable String name, Function<Option<?>, ?> optionFunc) {
+        return Mono.from(this.primary.localSession(name, optionFunc))
+                .flatMap(primarySession -> {
+                    final ReplicaFactory replica = selectReplica(null);
+                    if (replica == null) {
+                        this.fallbackCount.increment();
+                        return Mono.just(new RoutingLocalSession(primarySession, null, this.stickyNanos));
+                    }
+                    return Mono.from(replica.localSession(name, optionFunc))
+                            .map(replicaSession -> new RoutingLocalSession(primarySession, replicaSession, this.stickyNanos))
+                            .onErrorResume(error -> {
+                                LOG.debug("{} open session of replica {} failure , route to primary", this.name, replica, error);
+                                this.fallbackCount.increment();
+                                return Mono.just(new RoutingLocalSession(primarySession, null, this.stickyNanos));
+                            })
+                            .doOnCancel(() -> Mono.from(primarySession.close()).subscribe());
+                });
+    }
+
+    /**
+     * <p>
+     * Execute idempotent read-only query on replica , with hedging if {@link Builder#hedge(double, double)} is enabled :
+     * if the first attempt don't produce its first row (or complete) within the percentile of recent latency ,
+     * the same query is sent to a second replica. The first responder win , the loser is canceled , so the driver kill
+     * the query of loser by cancel path.
+     * <br/>
+     * <p>
+     * When hedging is enabled , the attempts borrow session from the pool of each replica ,
+     * see {@link Builder#hedge(double, double, PoolConfig)} , so hedge don't pay session setup.
+     * The latency is measured from submitting statement to first row , the time of borrowing session isn't contained.
+     * The session of winner is released to pool. The spi don't report whether the query of canceled session
+     * have been killed by server , so the session of loser is invalidated instead of reused.
+     * <br/>
+     * <p>
+     * The hedges are bounded by budget , so hedging can't amplify load when all replicas are slow.
+     * <br/>
+     *
+     * @param sql the read-only query , see {@link SqlClassifier#isReadOnly(String)}
+     * @return the rows of winner , emit {@link JdbdException} if sql isn't read-only or no available replica
+     * and don't fall back to primary.
+     */
+    public <R> Publisher<R> hedgedQuery(final String sql, final Function<CurrentRow, R> rowFunc) {
+        if (!SqlClassifier.isReadOnly(sql)) {
+            return Flux.error(new JdbdException(String.format("%s isn't read-only , can't be hedged", sql)));
+        }
+        return Flux.defer(() -> {
+            final LatencyHistogram histogram = this.hedgeHistogram;
+            final HedgeBudget budget = this.hedgeBudget;
+            final ReplicaFactory first = selectReplica(null);
+            if (first == null) {
+                if (!this.fallbackToPrimary) {
+                    return Flux.error(new JdbdException(String.format("%s no available replica", this.name)));
+                }
+                this.fallbackCount.increment();
+                return attempt(this.primary, sql, rowFunc, null);
+            } else if (budget == null || histogram == null) {
+                return attempt(first, sql, rowFunc, null);
+            }
+            budget.deposit();
+            final Flux<R> firstAttempt = attempt(first, sql, rowFunc, histogram);
+            final long delayNanos = hedgeDelayNanos(histogram);
+            if (delayNanos < 0 || this.replicas.length < 2) {
+                return firstAttempt;
+            }
+            final Flux<R> hedgeAttempt;
+            hedgeAttempt = Mono.delay(Duration.ofNanos(delayNanos))
+                    .flatMapMany(l -> {
+                        if (!budget.tryWithdraw()) {
+                            this.hedgeDeniedCount.increment();
+                            return Flux.never();
+                        }
+                        final ReplicaFactory second = selectReplica(first);
+                        if (second == null) {
+                            budget.refund();
+                            return Flux.never();
+                        }
+                        this.hedgeCount.increment();
+                        return attempt(second, sql, rowFunc, histogram);
+                    });
+            return Flux.firstWithSignal(firstAttempt, hedgeAttempt);
+        });
+    }
+
+    @Override
+    public String productFamily() {
+        return this.primary.productFamily();
+    }
+
+    @Override
+    public String factoryVendor() {
+        return this.primary.factoryVendor();
+    }
+
+    @Override
+    public String driverVendor() {
+        return this.primary.driverVendor();
+    }
+
+    @Override
+    public DriverVersion driverVersion() {
+        return this.primary.driverVersion();
+    }
+
+    @Nullable
+    @Override
+    public <T> T valueOf(Option<T> option) {
+        return this.primary.valueOf(option);
+    }
+
+    @Override
+    public Set<Option<?>> optionSet() {
+        return this.primary.optionSet();
+    }
+
+    /**
+     * <p>
+     * Close primary and all replicas.
+     * <br/>
+     */
+    @Override
+    public <T> Publisher<T> close() {
+        return Mono.defer(() -> {
+            if (!this.closed.compareAndSet(false, true)) {
+                return Mono.<T>empty();
+            }
+            final Disposable probeTask = this.probeTask;
+            if (probeTask != null) {
+                probeTask.dispose();
+            }
+            final List<Publisher<?>> list = new ArrayList<>(this.replicas.length + 1);
+            list.add(this.primary.close());
+            for (ReplicaFactory replica : this.replicas) {
+                list.add(replica.close());
+            }
+            return Mono.when(list).then(Mono.<T>empty());
+        });
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed.get();
+    }
+
+    public int replicaCount() {
+        return this.replicas.length;
+    }
+
+    public int availableReplicaCount() {
+        final long now = System.nanoTime();
+        int count = 0;
+        for (ReplicaFactory replica : this.replicas) {
+            if (replica.isAvailable(now, this.lagCeilingMillis, this.lagStaleNanos)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the count of read-only routing that fall back to primary.
+     */
+    public long fallbackCount() {
+        return this.fallbackCount.sum();
+    }
+
+    /**
+     * @return the count of hedged attempts.
+     */
+    public long hedgeCount() {
+        return this.hedgeCount.sum();
+    }
+
+    /**
+     * @return the count of hedged attempts that are denied by budget.
+     */
+    public long hedgeDeniedCount() {
+        return this.hedgeDeniedCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ name : %s , primary : %s , replicaCount : %s , lagCeilingMillis : %s , hash : %s]",
+                getClass().getName(),
+                this.name,
+                this.primary,
+                this.replicas.length,
+                this.lagCeilingMillis,
+                System.identityHashCode(this)
+        );
+    }
+
+    /**
+     * @param exclude the replica that can't be selected , for example : the replica of first attempt of hedged read.
+     * @return null : no available replica
+     */
+    @Nullable
+    ReplicaFactory selectReplica(final @Nullable ReplicaFactory exclude) {
+        final ReplicaFactory[] replicas = this.replicas;
+        final int length = replicas.length;
+        final long now = System.nanoTime();
+        final ReplicaFactory replica;
+        if (length == 0) {
+            replica = null;
+        } else if (length == 1) {
+            replica = isCandidate(replicas[0], now, exclude) ? replicas[0] : null;
+        } else {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int first = random.nextInt(length);
+            int second = random.nextInt(length - 1);
+            if (second >= first) {
+                second++;
+            }
+            final ReplicaFactory a = replicas[first], b = replicas[second];
+            final boolean aAvailable = isCandidate(a, now, exclude), bAvailable = isCandidate(b, now, exclude);
+            if (aAvailable && bAvailable) {
+                replica = a.score() <= b.score() ? a : b;
+            } else if (aAvailable) {
+                replica = a;
+            } else if (bAvailable) {
+                replica = b;
+            } else {
+                replica = selectBest(replicas, now, exclude);
+            }
+        }
+        if (replica != null) {
+            replica.onSelected();
+        }
+        return replica;
+    }
+
+    /**
+     * <p>
+     * Measure the replication lag of all replicas , this method is invoked by background task.
+     * The replica is unavailable if probe failure or timeout. The replica whose probe is still in flight is skipped ,
+     * so the hanging replica don't accumulate probes , and its lag sample become stale.
+     * <br/>
+     */
+    void probeLag() {
+        final ReplicaLagProbe probe = this.lagProbe;
+        if (probe == null || this.closed.get()) {
+            return;
+        }
+        final Duration timeout = this.probeInterval;
+        Mono<Long> mono;
+        for (ReplicaFactory replica : this.replicas) {
+            if (!replica.startProbe()) {
+                continue;
+            }
+            mono = Mono.defer(() -> Mono.from(probe.lagMillis(replica.delegate)));
+            if (!timeout.isZero()) {
+                mono = mono.timeout(timeout);
+            }
+            mono.doFinally(signal -> replica.endProbe())
+                    .subscribe(replica::updateLag, error -> {
+                        LOG.debug("{} probe replication lag of {} failure", this.name, replica.delegate, error);
+                        replica.updateLag(Long.MAX_VALUE);
+                        replica.recordFailure();
+                    });
+        }
+    }
+
+    /*################################## blow private method ##################################*/
+
+    /**
+     * the slow path of {@link #selectReplica(ReplicaFactory)} , when both random replicas are unavailable.
+     */
+    @Nullable
+    private ReplicaFactory selectBest(final ReplicaFactory[] replicas, final long now,
+                                      final @Nullable ReplicaFactory exclude) {
+        ReplicaFactory best = null;
+        for (ReplicaFactory replica : replicas) {
+            if (isCandidate(replica, now, exclude) && (best == null || replica.score() < best.score())) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    private boolean isCandidate(final ReplicaFactory replica, final long now, final @Nullable ReplicaFactory exclude) {
+        return replica != exclude && replica.isAvailable(now, this.lagCeilingMillis, this.lagStaleNanos);
+    }
+
+    /**
+     * @return negative : don't hedge , because samples are too few.
+     */
+    private long hedgeDelayNanos(final LatencyHistogram histogram) {
+        if (histogram.count() < MIN_HEDGE_SAMPLES) {
+            return -1L;
+        }
+        return histogram.percentile(this.hedgePercentile);
+    }
+
+    /**
+     * <p>
+     * One attempt of hedged read , the session is borrowed from the pool of replica if hedging is enabled ,
+     * else the session is opened and closed after complete , error or cancel.
+     * <br/>
+     */
+    private <R> Flux<R> attempt(final DatabaseSessionFactory factory, final String sql,
+                                final Function<CurrentRow, R> rowFunc, final @Nullable LatencyHistogram histogram) {
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = factory instanceof ReplicaFactory ? ((ReplicaFactory) factory).hedgePool : null;
+        if (pool == null) {
+            return Flux.usingWhen(factory.localSession(null, READ_ONLY_FUNC),
+                    session -> executeQuery(session, sql, rowFunc, histogram),
+                    LocalDatabaseSession::close
+            );
+        }
+        return Flux.usingWhen(pool.acquire(),
+                lease -> executeQuery(lease.session(), sql, rowFunc, histogram),
+                PooledSession::release,
+                (lease, error) -> lease.invalidate(),
+                // the query of loser maybe is still running , don't reuse session
+                PooledSession::invalidate
+        );
+    }
+
+    /**
+     * <p>
+     * The latency from submitting statement to first signal is recorded , the latency of canceled attempt is
+     * recorded as elapsed time , so the histogram isn't biased to fast replica.
+     * <br/>
+     */
+    private static <R> Flux<R> executeQuery(final LocalDatabaseSession session, final String sql,
+                                            final Function<CurrentRow, R> rowFunc,
+                                            final @Nullable LatencyHistogram histogram) {
+        final Flux<R> flux = Flux.from(session.executeQuery(sql, rowFunc));
+        if (histogram == null) {
+            return flux;
+        }
+        return Flux.defer(() -> {
+            final long startNanos = System.nanoTime();
+            final AtomicBoolean recorded = new AtomicBoolean(false);
+            final Runnable recorder = () -> {
+                if (recorded.compareAndSet(false, true)) {
+                    histogram.record(System.nanoTime() - startNanos);
+                }
+            };
+            return flux.doOnNext(row -> recorder.run())
+                    .doOnComplete(recorder)
+                    .doOnCancel(recorder);
+        });
+    }
+
+    private static boolean isReadOnly(final Function<Option<?>, ?> optionFunc) {
+        return Boolean.TRUE.equals(optionFunc.apply(Option.READ_ONLY_SESSION));
+    }
+
+
+    public static final class Builder {
+
+        private final DatabaseSessionFactory primary;
+
+        private final List<DatabaseSessionFactory> replicaList = new ArrayList<>();
+
+        private String name = "jdbd-read-write-splitting";
+
+        private int evictThreshold = 3;
+
+        private Duration evictDuration = Duration.ofSeconds(30);
+
+        private Duration lagCeiling = Duration.ZERO;
+
+        private ReplicaLagProbe lagProbe;
+
+        private Duration probeInterval = Duration.ofSeconds(5);
+
+        private boolean fallbackToPrimary = true;
+
+        private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+        private double hedgePercentile = 0.95;
+
+        private double hedgeBudgetRatio = 0.0;
+
+        private PoolConfig hedgePoolConfig;
+
+        private Builder(DatabaseSessionFactory primary) {
+            this.primary = primary;
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder replica(DatabaseSessionFactory replica) {
+            this.replicaList.add(replica);
+            return this;
+        }
+
+        /**
+         * @param threshold positive , default 3 , the count of consecutive failures that evict replica.
+         */
+        public Builder evictThreshold(int threshold) {
+            this.evictThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param duration positive , default 30 seconds .
+         */
+        public Builder evictDuration(Duration duration) {
+            this.evictDuration = duration;
+            return this;
+        }
+
+        /**
+         * @param ceiling positive , the replica whose replication lag exceed ceiling isn't selected.
+         * @param probe   the probe of replication lag , it's invoked every {@link #probeInterval(Duration)}.
+         */
+        public Builder lagCeiling(Duration ceiling, ReplicaLagProbe probe) {
+            this.lagCeiling = ceiling;
+            this.lagProbe = probe;
+            return this;
+        }
+
+        /**
+         * @param interval non-negative , default 5 seconds , {@link Duration#ZERO} : no background probe ,
+         *                 it's error if {@link #lagCeiling(Duration, ReplicaLagProbe)} is set , because the ceiling is never enforced.
+         */
+        public Builder probeInterval(Duration interval) {
+            this.probeInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param fallback default true , route read-only session to primary if no replica is available.
+         */
+        public Builder fallbackToPrimary(boolean fallback) {
+            this.fallbackToPrimary = fallback;
+            return this;
+        }
+
+        /**
+         * @param window non-negative , default 1 second , the window after write or commit in which
+         *               {@link #routingSession(String, Function)} route read-only statement to primary.
+         *               It should cover the usual replication lag.
+         */
+        public Builder readYourWritesWindow(Duration window) {
+            this.readYourWritesWindow = window;
+            return this;
+        }
+
+        /**
+         * <p>
+         * Enable hedged read of {@link #hedgedQuery(String, Function)} , default disabled.
+         * <br/>
+         *
+         * @param percentile  (0,1) , for example : 0.95 , the hedge is sent after the percentile of recent latency.
+         * @param budgetRatio (0,1] , for example : 0.05 , the hedges never exceed this ratio of requests plus a small burst.
+         * @see #hedge(double, double, PoolConfig)
+         */
+        public Builder hedge(double percentile, double budgetRatio) {
+            return hedge(percentile, budgetRatio, PoolConfig.builder()
+                    .name(this.name + "-hedge")
+                    .build());
+        }
+
+        /**
+         * <p>
+         * Enable hedged read of {@link #hedgedQuery(String, Function)} , default disabled.
+         * <br/>
+         *
+         * @param percentile  (0,1) , for example : 0.95 , the hedge is sent after the percentile of recent latency.
+         * @param budgetRatio (0,1] , for example : 0.05 , the hedges never exceed this ratio of requests plus a small burst.
+         * @param poolConfig  the config of the session pool of each replica , the replica factory must be created by
+         *                    {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)} , see {@link JdbdSessionPool}
+         */
+        public Builder hedge(double percentile, double budgetRatio, PoolConfig poolConfig) {
+            this.hedgePercentile = percentile;
+            this.hedgeBudgetRatio = budgetRatio;
+            this.hedgePoolConfig = poolConfig;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException throw when option error.
+         */
+        public JdbdReadWriteSplittingFactory build() throws IllegalArgumentException {
+            if (this.evictThreshold < 1) {
+                throw new IllegalArgumentException("evictThreshold must be positive");
+            } else if (this.evictDuration.isNegative() || this.evictDuration.isZero()) {
+                throw new IllegalArgumentException("evictDuration must be positive");
+            } else if (this.lagCeiling.isNegative() || this.probeInterval.isNegative()
+                    || this.readYourWritesWindow.isNegative()) {
+                throw new IllegalArgumentException("duration must be non-negative");
+            } else if (this.lagProbe != null && this.lagCeiling.isZero()) {
+                throw new IllegalArgumentException("lagCeiling must be positive");
+            } else if (this.lagProbe != null && this.probeInterval.toMillis() == 0) {
+                throw new IllegalArgumentException("probeInterval must be positive when lagCeiling is set");
+            } else if (!(this.hedgePercentile > 0.0 && this.hedgePercentile < 1.0)) {
+                throw new IllegalArgumentException("hedge percentile must be in (0,1)");
+            } else if (!(this.hedgeBudgetRatio >= 0.0 && this.hedgeBudgetRatio <= 1.0)) {
+                throw new IllegalArgumentException("hedge budget ratio must be in (0,1]");
+            } else if (this.hedgeBudgetRatio > 0.0 && this.hedgePoolConfig == null) {
+                throw new IllegalArgumentException("hedge pool config must be non-null");
+            }
+            return new JdbdReadWriteSplittingFactory(this);
+        }
+
+    }//Builder
+
+
+}
@@ -0,0 +1,972 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.JdbdException;
+import io.jdbd.lang.Nullable;
+import io.jdbd.pool.PoolDatabaseSession;
+import io.jdbd.pool.PoolLocalDatabaseSession;
+import io.jdbd.pool.PoolRmDatabaseSession;
+import io.jdbd.session.DatabaseSession;
+import io.jdbd.session.DatabaseSessionFactory;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * This class is the non-blocking pool of {@link PoolDatabaseSession}, the sessions is created by the {@link DatabaseSessionFactory}
+ * that is created by {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)}.
+ * <br/>
+ * <p>
+ * This pool provide following :
+ *     <ul>
+ *         <li>min idle and max size , the idle sessions are refilled to min idle in parallel ahead of demand</li>
+ *         <li>acquire timeout , the borrowers wait in FIFO order when all sessions are in use</li>
+ *         <li>idle and max-lifetime eviction</li>
+ *         <li>validation : the session that idle too long is validated by {@link PoolDatabaseSession#ping()} before borrowing</li>
+ *         <li>reset : the session is reset by {@link PoolDatabaseSession#reset()} after releasing , unless
+ *         {@link PoolDatabaseSession#isResetRequired()} is false</li>
+ *         <li>adaptive sizing : the size limit grows and shrinks from acquire wait , hold time and utilization , see {@link AdaptiveSizer}</li>
+ *     </ul>
+ * <br/>
+ * <p>
+ * The hot path of acquire and release is lock-free : the state of session is updated by CAS and the sessions are scanned
+ * in array , the lock is only used when session is created or destroyed.
+ * <br/>
+ * <p>
+ * The pool is partitioned by {@link SessionAffinity} , the borrower that run in EventLoop get the session that is bound
+ * to same EventLoop , so {@code CommunicationTask.submit} don't hop thread. Borrower steal session from other partitions
+ * only when local partition is empty.
+ * <br/>
+ *
+ * @param <S> the java type of session
+ * @since 1.0
+ */
+public final class JdbdSessionPool<S extends PoolDatabaseSession> {
+
+    /**
+     * @param factory the factory that is created by {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)}
+     */
+    public static JdbdSessionPool<PoolLocalDatabaseSession> forLocalSession(DatabaseSessionFactory factory,
+                                                                            PoolConfig config) {
+        return forLocalSession(factory, config, SessionAffinity.none());
+    }
+
+    /**
+     * @param factory  the factory that is created by {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)}
+     * @param affinity the affinity of session , for example : EventLoop affinity
+     */
+    public static JdbdSessionPool<PoolLocalDatabaseSession> forLocalSession(
+            DatabaseSessionFactory factory, PoolConfig config, SessionAffinity<PoolLocalDatabaseSession> affinity) {
+        return create(() -> Mono.from(factory.localSession())
+                .flatMap(session -> castSession(session, PoolLocalDatabaseSession.class)), config, affinity);
+    }
+
+    /**
+     * @param factory the factory that is created by {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)}
+     */
+    public static JdbdSessionPool<PoolRmDatabaseSession> forRmSession(DatabaseSessionFactory factory,
+                                                                      PoolConfig config) {
+        return forRmSession(factory, config, SessionAffinity.none());
+    }
+
+    /**
+     * @param factory  the factory that is created by {@link io.jdbd.Driver#forPoolVendor(String, java.util.Map)}
+     * @param affinity the affinity of session , for example : EventLoop affinity
+     */
+    public static JdbdSessionPool<PoolRmDatabaseSession> forRmSession(
+            DatabaseSessionFactory factory, PoolConfig config, SessionAffinity<PoolRmDatabaseSession> affinity) {
+        return create(() -> Mono.from(factory.rmSession())
+                .flatMap(session -> castSession(session, PoolRmDatabaseSession.class)), config, affinity);
+    }
+
+    /**
+     * @param connector the supplier of the {@link Publisher} that emit new session, like {@code reactor.core.publisher.Mono}
+     */
+    public static <S extends PoolDatabaseSession> JdbdSessionPool<S> create(
+            Supplier<? extends Publisher<? extends S>> connector, PoolConfig config) {
+        return new JdbdSessionPool<>(connector, config, SessionAffinity.none());
+    }
+
+    /**
+     * @param connector the supplier of the {@link Publisher} that emit new session, like {@code reactor.core.publisher.Mono}
+     * @param affinity  the affinity of session , for example : EventLoop affinity
+     */
+    public static <S extends PoolDatabaseSession> JdbdSessionPool<S> create(
+            Supplier<? extends Publisher<? extends S>> connector, PoolConfig config, SessionAffinity<S> affinity) {
+        return new JdbdSessionPool<>(connector, config, affinity);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbdSessionPool.class);
+
+    private static final PoolPartition[] EMPTY_PARTITIONS = new PoolPartition[0];
+
+    private final Supplier<? extends Publisher<? extends S>> connector;
+
+    private final PoolConfig config;
+
+    private final SessionAffinity<S> affinity;
+
+    private final long maxIdleNanos;
+
+    private final long maxLifetimeNanos;
+
+    private final long validateNanos;
+
+    private final ConcurrentMap<Object, PoolPartition> partitionMap = new ConcurrentHashMap<>();
+
+    /**
+     * the snapshot of {@link #partitionMap} for stealing , updated under {@link #partitionMap} lock.
+     */
+    private volatile PoolPartition[] partitions = EMPTY_PARTITIONS;
+
+    private final ConcurrentLinkedDeque<Waiter<S>> waiters = new ConcurrentLinkedDeque<>();
+
+    /**
+     * the count of sessions and pending creations.
+     */
+    private final AtomicInteger totalCount = new AtomicInteger(0);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+    private final LongAdder acquireCount = new LongAdder();
+
+    private final LongAdder createCount = new LongAdder();
+
+    private final LongAdder destroyCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder stealCount = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    private final LongAdder holdNanos = new LongAdder();
+
+    private final LongAdder releaseCount = new LongAdder();
+
+    private final LongAdder resetSkipCount = new LongAdder();
+
+    private final AdaptiveSizer sizer;
+
+    private final Disposable maintainer;
+
+    private final Disposable sizingTask;
+
+    private JdbdSessionPool(Supplier<? extends Publisher<? extends S>> connector, PoolConfig config,
+                            SessionAffinity<S> affinity) {
+        this.connector = connector;
+        this.config = config;
+        this.affinity = affinity;
+        this.maxIdleNanos = config.maxIdleTime().toNanos();
+        this.maxLifetimeNanos = config.maxLifetime().toNanos();
+        this.validateNanos = config.validateAfterIdle().toNanos();
+
+        final long intervalMillis = config.maintenanceInterval().toMillis();
+        if (intervalMillis > 0) {
+            this.maintainer = Schedulers.parallel()
+                    .schedulePeriodically(this::maintain, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.maintainer = null;
+        }
+
+        final long adaptiveMillis = config.adaptiveInterval().toMillis();
+        if (adaptiveMillis > 0) {
+            this.sizer = new AdaptiveSizer(config, System.nanoTime());
+            this.sizingTask = Schedulers.parallel()
+                    .schedulePeriodically(this::adjustSize, adaptiveMillis, adaptiveMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.sizer = null;
+            this.sizingTask = null;
+        }
+    }
+
+    public PoolConfig config() {
+        return this.config;
+    }
+
+    /**
+     * <p>
+     * Borrow session from pool , if no idle session and pool is full , wait until {@link PoolConfig#acquireTimeout()}.
+     * <br/>
+     *
+     * @return the {@link Mono} that emit lease , application must invoke {@link PooledSession#release()} after using session.
+     * @see #withSession(Function)
+     */
+    public Mono<PooledSession<S>> acquire() {
+        return Mono.<PooledSession<S>>create(sink -> {
+                    this.acquireCount.increment();
+                    final Waiter<S> waiter = new Waiter<>(this, sink);
+                    sink.onCancel(waiter);
+                    // the timer is armed only when acquiring can't complete synchronously , see armTimer()
+                    doAcquire(waiter);
+                })
+                // the lease that is emitted after cancel is given back
+                .doOnDiscard(PoolLease.class, this::onDiscard);
+    }
+
+    /**
+     * <p>
+     * Borrow session and release it after the {@link Publisher} that is returned by function terminate or is canceled.
+     * <br/>
+     */
+    public <T> Flux<T> withSession(final Function<S, ? extends Publisher<T>> function) {
+        return Flux.usingWhen(acquire(),
+                lease -> function.apply(lease.session()),
+                PooledSession::release,
+                (lease, error) -> lease.release(),
+                PooledSession::release
+        );
+    }
+
+    /**
+     * <p>
+     * Open sessions in parallel until idle count reach {@link PoolConfig#minIdle()},
+     * the parallelism is bounded by {@link PoolConfig#warmUpConcurrency()}.
+     * Application can wait this method before accepting traffic , so the first burst don't pay connection setup serially.
+     * <br/>
+     *
+     * @return the {@link Mono} that emit the count of new sessions , or emit the error of opening session after
+     * all opening terminate.
+     */
+    public Mono<Integer> warmUp() {
+        return Mono.defer(() -> fill(this.config.minIdle() - idleCount()));
+    }
+
+    /**
+     * <p>
+     * Open count sessions in parallel , the sessions is bounded by {@link PoolConfig#maxSize()}.
+     * <br/>
+     *
+     * @see #warmUp()
+     */
+    public Mono<Integer> warmUp(final int count) {
+        return Mono.defer(() -> fill(count));
+    }
+
+    public boolean isClosed() {
+        return this.closed.get();
+    }
+
+    /**
+     * <p>
+     * Close pool : the waiting borrowers receive error, idle sessions are closed, the borrowed sessions are closed after releasing.
+     * <br/>
+     */
+    public Mono<Void> close() {
+        return Mono.defer(() -> {
+            if (!this.closed.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            final Disposable maintainer = this.maintainer, sizingTask = this.sizingTask;
+            if (maintainer != null) {
+                maintainer.dispose();
+            }
+            if (sizingTask != null) {
+                sizingTask.dispose();
+            }
+            dispatch(); // emit error to waiters
+
+            final List<Mono<Void>> list = new ArrayList<>();
+            for (PoolPartition partition : this.partitions) {
+                for (PoolEntry<?> entry : partition.entries) {
+                    if (entry.compareAndSetState(PoolEntry.IDLE, PoolEntry.BORROWED)) {
+                        partition.idleCount.decrementAndGet();
+                        list.add(destroy(castEntry(entry)));
+                    }
+                }
+            }
+            return Mono.when(list);
+        });
+    }
+
+    /**
+     * @return the count of sessions and pending creations.
+     */
+    public int totalCount() {
+        return this.totalCount.get();
+    }
+
+    public int idleCount() {
+        int count = 0;
+        for (PoolPartition partition : this.partitions) {
+            count += Math.max(0, partition.idleCount.get());
+        }
+        return count;
+    }
+
+    /**
+     * @return the current size limit , if adaptive sizing is disabled , always {@link PoolConfig#maxSize()}.
+     */
+    public int sizeLimit() {
+        final AdaptiveSizer sizer = this.sizer;
+        return sizer == null ? this.config.maxSize() : sizer.limit();
+    }
+
+    /**
+     * @return null : adaptive sizing is disabled , see {@link PoolConfig#adaptiveInterval()}
+     */
+    @Nullable
+    public AdaptiveSizer sizer() {
+        return this.sizer;
+    }
+
+    /**
+     * @return the count of partitions , see {@link SessionAffinity#keyOf(PoolDatabaseSession)}
+     */
+    public int partitionCount() {
+        return this.partitions.length;
+    }
+
+    /**
+     * @return the count of borrowers that are waiting.
+     */
+    public int pendingCount() {
+        return this.waiters.size();
+    }
+
+    public long acquireCount() {
+        return this.acquireCount.sum();
+    }
+
+    public long createCount() {
+        return this.createCount.sum();
+    }
+
+    public long destroyCount() {
+        return this.destroyCount.sum();
+    }
+
+    public long timeoutCount() {
+        return this.timeoutCount.sum();
+    }
+
+    /**
+     * @return the count of releasing that don't invoke {@link PoolDatabaseSession#reset()} , because session is clean ,
+     * see {@link PoolDatabaseSession#isResetRequired()}
+     */
+    public long resetSkipCount() {
+        return this.resetSkipCount.sum();
+    }
+
+    /**
+     * @return the count of borrowing that get session from other partition , because the local partition is empty.
+     */
+    public long stealCount() {
+        return this.stealCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ name : %s , partitionCount : %s , totalCount : %s , idleCount : %s , pendingCount : %s , closed : %s , hash : %s]",
+                getClass().getName(),
+                this.config.name(),
+                this.partitions.length,
+                this.totalCount.get(),
+                idleCount(),
+                this.waiters.size(),
+                this.closed.get(),
+                System.identityHashCode(this)
+        );
+    }
+
+    /**
+     * @see PoolEntry#release()
+     */
+    Mono<Void> release(final PoolEntry<S> entry) {
+        return Mono.defer(() -> {
+            if (entry.state != PoolEntry.BORROWED) {
+                return Mono.empty();
+            }
+            this.holdNanos.add(System.nanoTime() - entry.lastAccessNanos);
+            this.releaseCount.increment();
+            if (this.closed.get()
+                    || entry.session.isClosed()
+                    || isExpired(entry, System.nanoTime())) {
+                return destroy(entry);
+            }
+            if (isClean(entry.session)) {
+                // clean session , no round trip
+                this.resetSkipCount.increment();
+                giveBack(entry);
+                return Mono.empty();
+            }
+            return Mono.from(entry.session.reset())
+                    .then(Mono.<Void>fromRunnable(() -> giveBack(entry)))
+                    .onErrorResume(error -> {
+                        LOG.debug("reset session error,close session {}", entry.session, error);
+                        return destroy(entry);
+                    });
+        });
+    }
+
+    /**
+     * @see PoolEntry#invalidate()
+     */
+    Mono<Void> invalidate(final PoolEntry<S> entry) {
+        return Mono.defer(() -> entry.state == PoolEntry.BORROWED ? destroy(entry) : Mono.empty());
+    }
+
+    /**
+     * <p>
+     * Evict idle sessions that idle too long or reach max lifetime, this method is invoked by background maintainer.
+     * <br/>
+     */
+    void maintain() {
+        if (this.closed.get()) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long maxIdleNanos = this.maxIdleNanos;
+        final int minIdle = this.config.minIdle();
+        // idle timeout evict at most idleCount - minIdle sessions , so the sessions that is kept by minIdle don't churn
+        int idleCount = idleCount();
+        for (PoolPartition partition : this.partitions) {
+            for (PoolEntry<?> entry : partition.entries) {
+                if (entry.state != PoolEntry.IDLE) {
+                    continue;
+                }
+                if (!isExpired(entry, now)
+                        && this.totalCount.get() <= sizeLimit()
+                        && (maxIdleNanos == 0
+                        || now - entry.lastAccessNanos < maxIdleNanos
+                        || idleCount <= minIdle)) {
+                    continue;
+                }
+                if (entry.compareAndSetState(PoolEntry.IDLE, PoolEntry.BORROWED)) {
+                    partition.idleCount.decrementAndGet();
+                    idleCount--;
+                    destroy(castEntry(entry)).subscribe();
+                }
+            }
+        }
+        refillIfNeed();
+    }
+
+
+    /**
+     * <p>
+     * Evaluate {@link AdaptiveSizer} , this method is invoked by background task every {@link PoolConfig#adaptiveInterval()}.
+     * <br/>
+     */
+    void adjustSize() {
+        final AdaptiveSizer sizer = this.sizer;
+        if (sizer == null || this.closed.get()) {
+            return;
+        }
+        final int borrowedCount = Math.max(0, this.totalCount.get() - idleCount());
+        final int change = sizer.evaluate(System.nanoTime(), this.acquireCount.sum(), this.waitNanos.sum(),
+                this.holdNanos.sum(), this.releaseCount.sum(), borrowedCount, this.waiters.size());
+        if (change > 0) {
+            LOG.debug("{} grow size limit to {}", this.config.name(), sizer.limit());
+            dispatch(); // waiters can create session
+        } else if (change < 0) {
+            LOG.debug("{} shrink size limit to {}", this.config.name(), sizer.limit());
+            maintain(); // evict idle sessions that exceed limit
+        }
+    }
+
+
+    /*################################## blow private method ##################################*/
+
+    private void doAcquire(final Waiter<S> waiter) {
+        final PoolEntry<S> entry;
+        if (waiter.isDisposed()) {
+            // timeout or cancelled , for example : ping failure after timeout
+            return;
+        } else if (this.closed.get()) {
+            fail(waiter, poolClosed());
+        } else if ((entry = borrowIdle()) != null) {
+            deliver(entry, waiter);
+        } else if (reserve()) {
+            armTimer(waiter);
+            createFor(waiter);
+        } else {
+            // arm before offer , so the thread that take waiter from queue always see timer
+            armTimer(waiter);
+            this.waiters.offerLast(waiter);
+            // other thread maybe have given back session before offer
+            dispatch();
+        }
+    }
+
+    /**
+     * <p>
+     * Hand over idle session or free capacity to waiters , this method is invoked after :
+     * <ul>
+     *     <li>session become idle</li>
+     *     <li>capacity is freed</li>
+     *     <li>new waiter</li>
+     *     <li>pool closed</li>
+     * </ul>
+     * so no waiter is lost.
+     * <br/>
+     */
+    private void dispatch() {
+        final ConcurrentLinkedDeque<Waiter<S>> waiters = this.waiters;
+        Waiter<S> waiter;
+        PoolEntry<S> entry;
+        while ((waiter = waiters.peekFirst()) != null) {
+            if (waiter.isDisposed()) {
+                waiters.remove(waiter);
+                continue;
+            } else if (this.closed.get()) {
+                if (waiters.remove(waiter)) {
+                    fail(waiter, poolClosed());
+                }
+                continue;
+            }
+            entry = borrowIdle();
+            if (entry == null && !reserve()) {
+                break;
+            }
+            if (waiters.remove(waiter)) {
+                if (entry == null) {
+                    createFor(waiter);
+                } else {
+                    deliver(entry, waiter);
+                }
+            } else if (entry == null) {
+                // other thread have taken the waiter
+                this.totalCount.decrementAndGet();
+            } else if (entry.compareAndSetState(PoolEntry.BORROWED, PoolEntry.IDLE)) {
+                entry.partition.idleCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Borrow idle session from the partition of current thread , steal from other partitions only when local partition is empty.
+     * <br/>
+     *
+     * @return null : no idle session
+     */
+    private PoolEntry<S> borrowIdle() {
+        final Object key = this.affinity.currentKey();
+        final PoolPartition local = key == null ? null : this.partitionMap.get(key);
+        PoolEntry<?> entry;
+        if (local != null && (entry = local.borrowIdle()) != null) {
+            return castEntry(entry);
+        }
+        final PoolPartition[] partitions = this.partitions;
+        final int length = partitions.length;
+        if (length == 0) {
+            return null;
+        }
+        // start from different partition , so the stealers don't contend on same partition
+        final int start = length == 1 ? 0 : ThreadLocalRandom.current().nextInt(length);
+        PoolPartition partition;
+        for (int i = 0; i < length; i++) {
+            partition = partitions[(start + i) % length];
+            if (partition == local || (entry = partition.borrowIdle()) == null) {
+                continue;
+            }
+            if (key != null) {
+                this.stealCount.increment();
+            }
+            return castEntry(entry);
+        }
+        return null;
+    }
+
+    private void deliver(final PoolEntry<S> entry, final Waiter<S> waiter) {
+        final long now = System.nanoTime();
+        if (isExpired(entry, now)) {
+            destroy(entry).subscribe();
+            doAcquire(waiter);
+        } else if (now - entry.lastAccessNanos < this.validateNanos) {
+            entry.lastAccessNanos = now;
+            complete(waiter, entry);
+            refillIfNeed();
+        } else {
+            armTimer(waiter);
+            Mono.from(entry.session.ping())
+                    .subscribe(null, error -> {
+                        LOG.debug("ping session error,close session {}", entry.session, error);
+                        destroy(entry).subscribe();
+                        doAcquire(waiter);
+                    }, () -> {
+                        entry.lastAccessNanos = System.nanoTime();
+                        complete(waiter, entry);
+                        refillIfNeed();
+                    });
+        }
+    }
+
+    /**
+     * <p>
+     * Emit lease to waiter , if waiter have timeout or been cancelled , give back session.
+     * <br/>
+     */
+    private void complete(final Waiter<S> waiter, final PoolEntry<S> entry) {
+        if (!waiter.claim()) {
+            // lose race with timeout or cancel
+            giveBack(entry);
+            return;
+        }
+        this.waitNanos.add(entry.lastAccessNanos - waiter.startNanos);
+        waiter.sink.success(new PoolLease<>(entry));
+    }
+
+    private void fail(final Waiter<S> waiter, final Throwable error) {
+        if (waiter.claim()) {
+            waiter.sink.error(error);
+        }
+    }
+
+    /**
+     * <p>
+     * Schedule the acquire timeout of waiter , the timeout is measured from {@link Waiter#startNanos}.
+     * Borrowing idle session that don't need ping complete synchronously , so it don't pay scheduling and cancelling timer.
+     * <br/>
+     */
+    private void armTimer(final Waiter<S> waiter) {
+        if (waiter.timer != null) {
+            return;
+        }
+        final long delayNanos = this.config.acquireTimeout().toNanos() - (System.nanoTime() - waiter.startNanos);
+        final Disposable timer;
+        timer = Schedulers.parallel().schedule(waiter::onTimeout, Math.max(0L, delayNanos), TimeUnit.NANOSECONDS);
+        waiter.timer = timer;
+        if (waiter.isDisposed()) {
+            // ended before claim() see timer
+            timer.dispose();
+        }
+    }
+
+    /**
+     * @see Waiter#onTimeout()
+     */
+    private void acquireTimeout(final Waiter<S> waiter) {
+        this.waiters.remove(waiter);
+        this.timeoutCount.increment();
+        // timed-out borrower waited whole timeout , so acquire wait isn't underestimated under saturation
+        this.waitNanos.add(System.nanoTime() - waiter.startNanos);
+        waiter.sink.error(new JdbdException(String.format("%s acquire session timeout after %s ms",
+                this.config.name(), this.config.acquireTimeout().toMillis())));
+    }
+
+    /**
+     * @param waiter the waiter that have reserved capacity
+     */
+    private void createFor(final Waiter<S> waiter) {
+        createSession()
+                .subscribe(session -> {
+                    final PoolEntry<S> entry = addEntry(session, PoolEntry.BORROWED);
+                    if (this.closed.get()) {
+                        destroy(entry).subscribe();
+                        fail(waiter, poolClosed());
+                    } else {
+                        complete(waiter, entry);
+                    }
+                }, error -> {
+                    unreserve();
+                    fail(waiter, error);
+                });
+    }
+
+    /**
+     * <p>
+     * Refill idle sessions to {@link PoolConfig#minIdle()} in background , at most one refilling at the same time.
+     * <br/>
+     */
+    private void refillIfNeed() {
+        final int minIdle = this.config.minIdle();
+        if (minIdle == 0
+                || this.closed.get()
+                || idleCount() >= minIdle
+                || !this.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        fill(minIdle - idleCount())
+                .onErrorResume(error -> {
+                    LOG.debug("{} refill idle session error", this.config.name(), error);
+                    return Mono.just(0);
+                })
+                .doFinally(signal -> this.refilling.set(false))
+                .subscribe();
+    }
+
+    /**
+     * @param count the count of idle session that should be opened
+     * @return the {@link Mono} that emit the count of new sessions.
+     */
+    private Mono<Integer> fill(final int count) {
+        if (count < 1) {
+            return Mono.just(0);
+        }
+        return Flux.range(0, count)
+                .flatMapDelayError(i -> createIdle(), this.config.warmUpConcurrency(), 1)
+                .reduce(0, Integer::sum);
+    }
+
+    /**
+     * @return the {@link Mono} that emit 1 , or 0 if pool is full or closed.
+     */
+    private Mono<Integer> createIdle() {
+        if (this.closed.get() || !reserve()) {
+            return Mono.just(0);
+        }
+        return createSession()
+                .onErrorResume(error -> {
+                    unreserve();
+                    return Mono.error(error);
+                })
+                .map(session -> {
+                    final PoolEntry<S> entry = addEntry(session, PoolEntry.IDLE);
+                    if (this.closed.get() && entry.compareAndSetState(PoolEntry.IDLE, PoolEntry.BORROWED)) {
+                        entry.partition.idleCount.decrementAndGet();
+                        destroy(entry).subscribe();
+                    } else {
+                        dispatch();
+                    }
+                    return 1;
+                });
+    }
+
+    private Mono<S> createSession() {
+        return Mono.<S>defer(() -> Mono.from(this.connector.get()))
+                .switchIfEmpty(Mono.error(() -> new JdbdException("connector don't emit session")))
+                .doOnNext(session -> this.createCount.increment());
+    }
+
+    private void giveBack(final PoolEntry<S> entry) {
+        if (this.closed.get()
+                || isExpired(entry, System.nanoTime())
+                || (this.totalCount.get() > sizeLimit() && this.waiters.isEmpty())) {
+            destroy(entry).subscribe();
+            return;
+        }
+        entry.lastAccessNanos = System.nanoTime();
+        if (!entry.compareAndSetState(PoolEntry.BORROWED, PoolEntry.IDLE)) {
+            return;
+        }
+        final PoolPartition partition = entry.partition;
+        partition.idleCount.incrementAndGet();
+        if (this.closed.get() && entry.compareAndSetState(PoolEntry.IDLE, PoolEntry.BORROWED)) {
+            // pool closed after above checking
+            partition.idleCount.decrementAndGet();
+            destroy(entry).subscribe();
+        } else {
+            dispatch();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onDiscard(final PoolLease<?> lease) {
+        if (lease.end()) {
+            giveBack((PoolEntry<S>) lease.entry);
+        }
+    }
+
+    private Mono<Void> destroy(final PoolEntry<S> entry) {
+        int oldState;
+        do {
+            oldState = entry.state;
+            if (oldState == PoolEntry.REMOVED) {
+                return Mono.empty();
+            }
+        } while (!entry.compareAndSetState(oldState, PoolEntry.REMOVED));
+
+        if (oldState == PoolEntry.IDLE) {
+            entry.partition.idleCount.decrementAndGet();
+        }
+        entry.partition.remove(entry);
+        this.destroyCount.increment();
+        unreserve();
+
+        return Mono.from(entry.session.<Void>close())
+                .onErrorResume(error -> {
+                    LOG.debug("close session error {}", entry.session, error);
+                    return Mono.empty();
+                });
+    }
+
+    private boolean reserve() {
+        final int maxSize = sizeLimit();
+        int count;
+        do {
+            count = this.totalCount.get();
+            if (count >= maxSize) {
+                return false;
+            }
+        } while (!this.totalCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void unreserve() {
+        this.totalCount.decrementAndGet();
+        dispatch();
+    }
+
+    /**
+     * @return true : session can be given back without reset , the session in transaction is never clean ,
+     * even if driver don't track transaction state.
+     */
+    private static boolean isClean(final PoolDatabaseSession session) {
+        try {
+            return !session.inTransaction() && !session.isResetRequired();
+        } catch (Throwable e) {
+            LOG.debug("read state error of {} , reset session", session, e);
+            return false;
+        }
+    }
+
+    private boolean isExpired(final PoolEntry<?> entry, final long now) {
+        return this.maxLifetimeNanos > 0 && now - entry.createNanos >= this.maxLifetimeNanos;
+    }
+
+    private PoolEntry<S> addEntry(final S session, final int state) {
+        Object key = this.affinity.keyOf(session);
+        if (key == null) {
+            // ConcurrentHashMap don't accept null key
+            key = NoAffinity.KEY;
+        }
+        PoolPartition partition = this.partitionMap.get(key);
+        if (partition == null) {
+            synchronized (this.partitionMap) {
+                partition = this.partitionMap.get(key);
+                if (partition == null) {
+                    partition = new PoolPartition(key);
+                    final PoolPartition[] oldArray = this.partitions;
+                    final PoolPartition[] newArray = Arrays.copyOf(oldArray, oldArray.length + 1);
+                    newArray[oldArray.length] = partition;
+                    this.partitions = newArray;
+                    this.partitionMap.put(key, partition);
+                }
+            }
+        }
+        final PoolEntry<S> entry = new PoolEntry<>(this, session, partition, state);
+        partition.add(entry);
+        if (state == PoolEntry.IDLE) {
+            partition.idleCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private JdbdException poolClosed() {
+        return new JdbdException(String.format("%s have closed.", this.config.name()));
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <S extends PoolDatabaseSession> PoolEntry<S> castEntry(PoolEntry<?> entry) {
+        return (PoolEntry<S>) entry;
+    }
+
+    private static <S extends PoolDatabaseSession> Mono<S> castSession(final DatabaseSession session,
+                                                                      final Class<S> sessionClass) {
+        if (sessionClass.isInstance(session)) {
+            return Mono.just(sessionClass.cast(session));
+        }
+        return Mono.from(session.<Void>close())
+                .then(Mono.error(() -> new JdbdException(String.format(
+                        "%s isn't %s ,factory isn't created by Driver#forPoolVendor()", session, sessionClass.getName()))
+                ));
+    }
+
+
+    /**
+     * <p>
+     * The waiter is ended just once by one of completion , failure , timeout and cancel , see {@link #claim()} ,
+     * so the session that is delivered after timeout is given back to pool instead of lost.
+     * <br/>
+     */
+    private static final class Waiter<S extends PoolDatabaseSession> implements Disposable {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Waiter> ENDED =
+                AtomicIntegerFieldUpdater.newUpdater(Waiter.class, "ended");
+
+        private final JdbdSessionPool<S> pool;
+
+        private final MonoSink<PooledSession<S>> sink;
+
+        private final long startNanos = System.nanoTime();
+
+        /**
+         * null : acquiring haven't gone asynchronous , see {@link JdbdSessionPool#armTimer(Waiter)}
+         */
+        private volatile Disposable timer;
+
+        private volatile int ended;
+
+        private Waiter(JdbdSessionPool<S> pool, MonoSink<PooledSession<S>> sink) {
+            this.pool = pool;
+            this.sink = sink;
+        }
+
+        @Override
+        public void dispose() {
+            if (claim()) {
+                this.pool.waiters.remove(this);
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return this.ended != 0;
+        }
+
+        /**
+         * @return true : this invoking end the waiter , and the timer is cancelled.
+         */
+        private boolean claim() {
+            if (!ENDED.compareAndSet(this, 0, 1)) {
+                return false;
+            }
+            final Disposable timer = this.timer;
+            if (timer != null) {
+                timer.dispose();
+            }
+            return true;
+        }
+
+        private void onTimeout() {
+            if (ENDED.compareAndSet(this, 0, 1)) {
+                this.pool.acquireTimeout(this);
+            }
+        }
+
+    }//Waiter
+
+
+}
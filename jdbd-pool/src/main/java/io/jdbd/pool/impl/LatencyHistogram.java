@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * This class is a lock-free , log-linear latency histogram for hedged read , see {@link JdbdReadWriteSplittingFactory#hedgedQuery(String, java.util.function.Function)}.
+ * Each power of two is split to 4 sub buckets , so the relative error of {@link #percentile(double)} is less than 25%.
+ * <br/>
+ * <p>
+ * All counts are halved after {@link #DECAY_WINDOW} samples , so the histogram follow the recent latency of replicas.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    static final long DECAY_WINDOW = 4096;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKET_COUNT);
+
+    private final AtomicLong total = new AtomicLong(0);
+
+    private final AtomicBoolean decaying = new AtomicBoolean(false);
+
+    LatencyHistogram() {
+    }
+
+    void record(final long nanos) {
+        this.counts.incrementAndGet(bucketIndex(Math.max(0L, nanos)));
+        if (this.total.incrementAndGet() >= DECAY_WINDOW && this.decaying.compareAndSet(false, true)) {
+            decay();
+        }
+    }
+
+    long count() {
+        return this.total.get();
+    }
+
+    /**
+     * @param percentile (0,1)
+     * @return the upper bound of bucket that contains percentile , 0 : no sample.
+     */
+    long percentile(final double percentile) {
+        final AtomicLongArray counts = this.counts;
+        final int length = counts.length();
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += counts.get(i);
+        }
+        final long target = (long) Math.ceil(sum * percentile);
+        long accumulated = 0;
+        for (int i = 0; i < length; i++) {
+            accumulated += counts.get(i);
+            if (accumulated >= target && accumulated > 0) {
+                return bucketUpperBound(i);
+            }
+        }
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ count : %s , p50 : %s , p99 : %s , hash : %s]",
+                getClass().getName(),
+                this.total.get(),
+                percentile(0.5),
+                percentile(0.99),
+                System.identityHashCode(this)
+        );
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent << SUB_BUCKET_BITS) | sub;
+    }
+
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int exponent = index >>> SUB_BUCKET_BITS, sub = index & (SUB_BUCKET_COUNT - 1);
+        final long upperBound = ((SUB_BUCKET_COUNT | sub) + 1L) << (exponent - SUB_BUCKET_BITS);
+        return upperBound < 0 ? Long.MAX_VALUE : upperBound - 1;
+    }
+
+    /*################################## blow private method ##################################*/
+
+    private void decay() {
+        try {
+            final AtomicLongArray counts = this.counts;
+            final int length = counts.length();
+            long sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += counts.updateAndGet(i, c -> c >> 1);
+            }
+            this.total.set(sum);
+        } finally {
+            this.decaying.set(false);
+        }
+    }
+
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.lang.Nullable;
+import io.jdbd.pool.PoolDatabaseSession;
+
+/**
+ * @see SessionAffinity#none()
+ * @since 1.0
+ */
+final class NoAffinity implements SessionAffinity<PoolDatabaseSession> {
+
+    static final NoAffinity INSTANCE = new NoAffinity();
+
+    /**
+     * the key of the sessions that don't have affinity , see {@link SessionAffinity#keyOf(PoolDatabaseSession)}
+     */
+    static final Object KEY = new Object();
+
+    private NoAffinity() {
+    }
+
+    @Override
+    public Object keyOf(PoolDatabaseSession session) {
+        return KEY;
+    }
+
+    @Nullable
+    @Override
+    public Object currentKey() {
+        return KEY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ hash : %s]", getClass().getName(), System.identityHashCode(this));
+    }
+
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import java.time.Duration;
+
+/**
+ * <p>
+ * This class representing the config of {@link JdbdSessionPool} , this class is immutable.
+ * <br/>
+ * <p>
+ * Create instance by {@link #builder()}, for example :
+ * <pre><code>
+ *     PoolConfig config = PoolConfig.builder()
+ *          .minIdle(2)
+ *          .maxSize(20)
+ *          .acquireTimeout(Duration.ofSeconds(5))
+ *          .build();
+ * </code></pre>
+ * <br/>
+ *
+ * @since 1.0
+ */
+public final class PoolConfig {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final String name;
+
+    private final int minIdle;
+
+    private final int maxSize;
+
+    private final Duration acquireTimeout;
+
+    private final Duration maxIdleTime;
+
+    private final Duration maxLifetime;
+
+    private final Duration validateAfterIdle;
+
+    private final Duration maintenanceInterval;
+
+    private final int warmUpConcurrency;
+
+    private final Duration adaptiveInterval;
+
+    private final Duration targetAcquireWait;
+
+    private PoolConfig(Builder builder) {
+        this.name = builder.name;
+        this.minIdle = builder.minIdle;
+        this.maxSize = builder.maxSize;
+        this.acquireTimeout = builder.acquireTimeout;
+        this.maxIdleTime = builder.maxIdleTime;
+        this.maxLifetime = builder.maxLifetime;
+        this.validateAfterIdle = builder.validateAfterIdle;
+        this.maintenanceInterval = builder.maintenanceInterval;
+        this.warmUpConcurrency = builder.warmUpConcurrency;
+        this.adaptiveInterval = builder.adaptiveInterval;
+        this.targetAcquireWait = builder.targetAcquireWait;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    public int minIdle() {
+        return this.minIdle;
+    }
+
+    /**
+     * @return the hard upper bound of pool size , if adaptive sizing is enabled , the size limit is adjusted in [max(1,minIdle),maxSize] .
+     */
+    public int maxSize() {
+        return this.maxSize;
+    }
+
+    public Duration acquireTimeout() {
+        return this.acquireTimeout;
+    }
+
+    /**
+     * @return {@link Duration#ZERO} : never evict idle session.
+     */
+    public Duration maxIdleTime() {
+        return this.maxIdleTime;
+    }
+
+    /**
+     * @return {@link Duration#ZERO} : no max lifetime.
+     */
+    public Duration maxLifetime() {
+        return this.maxLifetime;
+    }
+
+    /**
+     * @return the idle duration after that session is validated by {@link io.jdbd.pool.PoolDatabaseSession#ping()}
+     * before borrowing , {@link Duration#ZERO} : always validate.
+     */
+    public Duration validateAfterIdle() {
+        return this.validateAfterIdle;
+    }
+
+    /**
+     * @return the interval of background maintenance , {@link Duration#ZERO} : no background maintenance.
+     * The maintainer evict idle sessions and refill idle sessions to {@link #minIdle()}.
+     */
+    public Duration maintenanceInterval() {
+        return this.maintenanceInterval;
+    }
+
+    /**
+     * @return the max count of sessions that are opened in parallel by warm-up and refilling.
+     * @see JdbdSessionPool#warmUp()
+     */
+    public int warmUpConcurrency() {
+        return this.warmUpConcurrency;
+    }
+
+    /**
+     * @return the window of adaptive sizing , {@link Duration#ZERO} : disable adaptive sizing , the size limit always is {@link #maxSize()}.
+     * @see AdaptiveSizer
+     */
+    public Duration adaptiveInterval() {
+        return this.adaptiveInterval;
+    }
+
+    /**
+     * @return the acquire wait that adaptive sizing try to keep under.
+     * @see AdaptiveSizer
+     */
+    public Duration targetAcquireWait() {
+        return this.targetAcquireWait;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ name : %s , minIdle : %s , maxSize : %s , acquireTimeout : %s , maxIdleTime : %s , maxLifetime : %s , validateAfterIdle : %s , maintenanceInterval : %s , warmUpConcurrency : %s , adaptiveInterval : %s , targetAcquireWait : %s , hash : %s]",
+                getClass().getName(),
+                this.name,
+                this.minIdle,
+                this.maxSize,
+                this.acquireTimeout,
+                this.maxIdleTime,
+                this.maxLifetime,
+                this.validateAfterIdle,
+                this.maintenanceInterval,
+                this.warmUpConcurrency,
+                this.adaptiveInterval,
+                this.targetAcquireWait,
+                System.identityHashCode(this)
+        );
+    }
+
+
+    public static final class Builder {
+
+        private String name = "jdbd-pool";
+
+        private int minIdle = 0;
+
+        private int maxSize = 10;
+
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+
+        private Duration maxIdleTime = Duration.ofMinutes(10);
+
+        private Duration maxLifetime = Duration.ofMinutes(30);
+
+        private Duration validateAfterIdle = Duration.ofMillis(500);
+
+        private Duration maintenanceInterval = Duration.ofSeconds(30);
+
+        private int warmUpConcurrency = 4;
+
+        private Duration adaptiveInterval = Duration.ZERO;
+
+        private Duration targetAcquireWait = Duration.ofMillis(5);
+
+        private Builder() {
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @param minIdle non-negative , default 0 .
+         */
+        public Builder minIdle(int minIdle) {
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        /**
+         * @param maxSize positive , default 10 .
+         */
+        public Builder maxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param timeout positive , default 30 seconds .
+         */
+        public Builder acquireTimeout(Duration timeout) {
+            this.acquireTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param maxIdleTime non-negative , default 10 minutes , {@link Duration#ZERO} : never evict idle session.
+         */
+        public Builder maxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        /**
+         * @param maxLifetime non-negative , default 30 minutes , {@link Duration#ZERO} : no max lifetime.
+         */
+        public Builder maxLifetime(Duration maxLifetime) {
+            this.maxLifetime = maxLifetime;
+            return this;
+        }
+
+        /**
+         * @param validateAfterIdle non-negative , default 500 milliseconds , {@link Duration#ZERO} : always validate.
+         */
+        public Builder validateAfterIdle(Duration validateAfterIdle) {
+            this.validateAfterIdle = validateAfterIdle;
+            return this;
+        }
+
+        /**
+         * @param interval non-negative , default 30 seconds , {@link Duration#ZERO} : no background maintenance.
+         */
+        public Builder maintenanceInterval(Duration interval) {
+            this.maintenanceInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param concurrency positive , default 4 .
+         */
+        public Builder warmUpConcurrency(int concurrency) {
+            this.warmUpConcurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param interval non-negative , default {@link Duration#ZERO} , {@link Duration#ZERO} : disable adaptive sizing.
+         */
+        public Builder adaptiveInterval(Duration interval) {
+            this.adaptiveInterval = interval;
+            return this;
+        }
+
+        /**
+         * @param wait non-negative , default 5 milliseconds.
+         */
+        public Builder targetAcquireWait(Duration wait) {
+            this.targetAcquireWait = wait;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException throw when option error.
+         */
+        public PoolConfig build() throws IllegalArgumentException {
+            if (this.maxSize < 1) {
+                throw new IllegalArgumentException("maxSize must be positive");
+            } else if (this.warmUpConcurrency < 1) {
+                throw new IllegalArgumentException("warmUpConcurrency must be positive");
+            } else if (this.minIdle < 0 || this.minIdle > this.maxSize) {
+                throw new IllegalArgumentException("minIdle must be in [0,maxSize]");
+            } else if (this.acquireTimeout.isNegative() || this.acquireTimeout.isZero()) {
+                throw new IllegalArgumentException("acquireTimeout must be positive");
+            } else if (this.maxIdleTime.isNegative()
+                    || this.maxLifetime.isNegative()
+                    || this.validateAfterIdle.isNegative()
+                    || this.maintenanceInterval.isNegative()
+                    || this.adaptiveInterval.isNegative()
+                    || this.targetAcquireWait.isNegative()) {
+                throw new IllegalArgumentException("duration must be non-negative");
+            }
+            return new PoolConfig(this);
+        }
+
+    }//Builder
+
+
+}
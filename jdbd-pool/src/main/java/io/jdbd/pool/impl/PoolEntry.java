@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.pool.PoolDatabaseSession;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * <p>
+ * This class representing the session in {@link JdbdSessionPool} , the borrower get the {@link PoolLease} of this entry.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class PoolEntry<S extends PoolDatabaseSession> {
+
+    static final int IDLE = 0;
+
+    static final int BORROWED = 1;
+
+    static final int REMOVED = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PoolEntry> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(PoolEntry.class, "state");
+
+    final JdbdSessionPool<S> pool;
+
+    final S session;
+
+    final PoolPartition partition;
+
+    final long createNanos;
+
+    volatile int state;
+
+    volatile long lastAccessNanos;
+
+    PoolEntry(JdbdSessionPool<S> pool, S session, PoolPartition partition, int state) {
+        this.pool = pool;
+        this.session = session;
+        this.partition = partition;
+        this.state = state;
+        this.createNanos = this.lastAccessNanos = System.nanoTime();
+    }
+
+    boolean compareAndSetState(int expect, int update) {
+        return STATE.compareAndSet(this, expect, update);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ session : %s , partition : %s , state : %s , hash : %s]",
+                getClass().getName(),
+                this.session,
+                this.partition.key,
+                this.state,
+                System.identityHashCode(this)
+        );
+    }
+
+
+}
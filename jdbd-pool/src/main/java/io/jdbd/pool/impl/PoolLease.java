@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.pool.PoolDatabaseSession;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * <p>
+ * This class representing the lease of one borrowing of {@link PoolEntry} , every borrowing create new lease,
+ * so the stale lease that have been released can't release or invalidate the session that is borrowed by next borrower.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class PoolLease<S extends PoolDatabaseSession> implements PooledSession<S> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PoolLease> ENDED =
+            AtomicIntegerFieldUpdater.newUpdater(PoolLease.class, "ended");
+
+    final PoolEntry<S> entry;
+
+    private volatile int ended;
+
+    PoolLease(PoolEntry<S> entry) {
+        this.entry = entry;
+    }
+
+    @Override
+    public S session() {
+        return this.entry.session;
+    }
+
+    @Override
+    public Mono<Void> release() {
+        return Mono.defer(() -> end() ? this.entry.pool.release(this.entry) : Mono.empty());
+    }
+
+    @Override
+    public Mono<Void> invalidate() {
+        return Mono.defer(() -> end() ? this.entry.pool.invalidate(this.entry) : Mono.empty());
+    }
+
+    /**
+     * @return true : this invoking end the lease , false : the lease have ended.
+     */
+    boolean end() {
+        return ENDED.compareAndSet(this, 0, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ entry : %s , ended : %s , hash : %s]",
+                getClass().getName(),
+                this.entry,
+                this.ended == 1,
+                System.identityHashCode(this)
+        );
+    }
+
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * This class representing the partition of {@link JdbdSessionPool} , the sessions of one partition have same
+ * {@link SessionAffinity#keyOf(io.jdbd.pool.PoolDatabaseSession)}. Each partition has own idle counter and entry array,
+ * so the borrowers on different EventLoop don't contend.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class PoolPartition {
+
+    private static final PoolEntry<?>[] EMPTY_ENTRIES = new PoolEntry<?>[0];
+
+    final Object key;
+
+    final AtomicInteger idleCount = new AtomicInteger(0);
+
+    /**
+     * only for copy on write of {@link #entries}
+     */
+    private final Object lock = new Object();
+
+    volatile PoolEntry<?>[] entries = EMPTY_ENTRIES;
+
+    PoolPartition(Object key) {
+        this.key = key;
+    }
+
+    /**
+     * @return null : no idle session
+     */
+    PoolEntry<?> borrowIdle() {
+        if (this.idleCount.get() <= 0) {
+            return null;
+        }
+        // scan from head , so the sessions at tail become idle and are evicted when load decrease.
+        for (PoolEntry<?> entry : this.entries) {
+            if (entry.state == PoolEntry.IDLE && entry.compareAndSetState(PoolEntry.IDLE, PoolEntry.BORROWED)) {
+                this.idleCount.decrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    void add(final PoolEntry<?> entry) {
+        synchronized (this.lock) {
+            final PoolEntry<?>[] oldArray = this.entries;
+            final PoolEntry<?>[] newArray = new PoolEntry<?>[oldArray.length + 1];
+            System.arraycopy(oldArray, 0, newArray, 0, oldArray.length);
+            newArray[oldArray.length] = entry;
+            this.entries = newArray;
+        }
+    }
+
+    void remove(final PoolEntry<?> entry) {
+        synchronized (this.lock) {
+            final PoolEntry<?>[] oldArray = this.entries;
+            for (int i = 0; i < oldArray.length; i++) {
+                if (oldArray[i] != entry) {
+                    continue;
+                }
+                final PoolEntry<?>[] newArray = new PoolEntry<?>[oldArray.length - 1];
+                System.arraycopy(oldArray, 0, newArray, 0, i);
+                System.arraycopy(oldArray, i + 1, newArray, i, oldArray.length - i - 1);
+                this.entries = newArray;
+                break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ key : %s , size : %s , idleCount : %s , hash : %s]",
+                getClass().getName(),
+                this.key,
+                this.entries.length,
+                this.idleCount.get(),
+                System.identityHashCode(this)
+        );
+    }
+
+
+}
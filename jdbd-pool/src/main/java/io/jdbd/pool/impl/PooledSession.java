@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.pool.PoolDatabaseSession;
+import reactor.core.publisher.Mono;
+
+/**
+ * <p>
+ * This interface representing the lease of a session that is borrowed from {@link JdbdSessionPool}.
+ * Application must invoke {@link #release()} or {@link #invalidate()} just once , after that the session must not be
+ * used any more , because the session maybe is borrowed by next borrower. Every borrowing get new lease , so invoking
+ * {@link #release()} or {@link #invalidate()} of ended lease is no-op.
+ * <br/>
+ *
+ * @param <S> the java type of session
+ * @see JdbdSessionPool#acquire()
+ * @since 1.0
+ */
+public interface PooledSession<S extends PoolDatabaseSession> {
+
+    S session();
+
+    /**
+     * <p>
+     * Reset session by {@link PoolDatabaseSession#reset()} and give back session to pool ,
+     * if reset failure , the session is closed. The clean session isn't reset , see {@link PoolDatabaseSession#isResetRequired()}.
+     * <br/>
+     *
+     * @return the {@link Mono} that complete after session is given back.
+     */
+    Mono<Void> release();
+
+    /**
+     * <p>
+     * Close session and remove it from pool, for example : application find the session is broken.
+     * <br/>
+     */
+    Mono<Void> invalidate();
+
+}
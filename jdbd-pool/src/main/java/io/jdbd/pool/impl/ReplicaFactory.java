@@ -0,0 +1,307 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.DriverVersion;
+import io.jdbd.lang.Nullable;
+import io.jdbd.pool.PoolLocalDatabaseSession;
+import io.jdbd.session.*;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * This class representing one replica of {@link JdbdReadWriteSplittingFactory} , this class delegate to the factory of replica
+ * and record the latency , pending count , failures and replication lag of replica.
+ * <br/>
+ * <p>
+ * Limitation : the latency and pending count are measured on session opening , see {@link #score()}.
+ * If application hold long-lived sessions , the openings are rare , so the score of replicas are close to each other
+ * and power-of-two-choices is nearly random choice. The load of statements on long-lived session isn't visible
+ * to this class , because the spi don't expose the timing of statement.
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class ReplicaFactory implements DatabaseSessionFactory {
+
+    /**
+     * the weight of new latency sample.
+     */
+    private static final double ALPHA = 0.3;
+
+    final DatabaseSessionFactory delegate;
+
+    /**
+     * the pool of hedged read , null : hedging is disabled.
+     */
+    @Nullable
+    final JdbdSessionPool<PoolLocalDatabaseSession> hedgePool;
+
+    private final int evictThreshold;
+
+    private final long evictNanos;
+
+    /**
+     * the bits of latency EWMA in nanoseconds , 0 : no sample.
+     */
+    private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    private final AtomicInteger failureCount = new AtomicInteger(0);
+
+    private final LongAdder selectCount = new LongAdder();
+
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+
+    private volatile long evictUntilNanos;
+
+    private volatile long lagMillis;
+
+    /**
+     * the time of last lag sample , the replica whose sample is stale is unavailable.
+     */
+    private volatile long lagSampleNanos;
+
+    /**
+     * @param hedgePoolConfig null : hedging is disabled
+     */
+    ReplicaFactory(DatabaseSessionFactory delegate, int evictThreshold, long evictNanos,
+                   @Nullable PoolConfig hedgePoolConfig) {
+        this.delegate = delegate;
+        this.evictThreshold = evictThreshold;
+        this.evictNanos = evictNanos;
+        this.evictUntilNanos = this.lagSampleNanos = System.nanoTime();
+        // the pool open session by this factory lazily , so the opening latency is recorded too.
+        this.hedgePool = hedgePoolConfig == null ? null : JdbdSessionPool.forLocalSession(this, hedgePoolConfig);
+    }
+
+    @Override
+    public String name() {
+        return this.delegate.name();
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> localSession() {
+        return measure(this.delegate.localSession());
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> localSession(@Nullable String name, Function<Option<?>, ?> optionFunc) {
+        return measure(this.delegate.localSession(name, optionFunc));
+    }
+
+    @Override
+    public Publisher<RmDatabaseSession> rmSession() {
+        return measure(this.delegate.rmSession());
+    }
+
+    @Override
+    public Publisher<RmDatabaseSession> rmSession(@Nullable String name, Function<Option<?>, ?> optionFunc) {
+        return measure(this.delegate.rmSession(name, optionFunc));
+    }
+
+    @Override
+    public String productFamily() {
+        return this.delegate.productFamily();
+    }
+
+    @Override
+    public String factoryVendor() {
+        return this.delegate.factoryVendor();
+    }
+
+    @Override
+    public String driverVendor() {
+        return this.delegate.driverVendor();
+    }
+
+    @Override
+    public DriverVersion driverVersion() {
+        return this.delegate.driverVersion();
+    }
+
+    @Nullable
+    @Override
+    public <T> T valueOf(Option<T> option) {
+        return this.delegate.valueOf(option);
+    }
+
+    @Override
+    public Set<Option<?>> optionSet() {
+        return this.delegate.optionSet();
+    }
+
+    /**
+     * <p>
+     * Close the pool of hedged read and the factory of replica.
+     * <br/>
+     */
+    @Override
+    public <T> Publisher<T> close() {
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool = this.hedgePool;
+        if (pool == null) {
+            return this.delegate.close();
+        }
+        return pool.close()
+                .then(Mono.from(this.delegate.<T>close()));
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.delegate.isClosed();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ delegate : %s , latencyNanos : %.0f , pendingCount : %s , failureCount : %s , lagMillis : %s , hash : %s]",
+                getClass().getName(),
+                this.delegate,
+                latencyNanos(),
+                this.pendingCount.get(),
+                this.failureCount.get(),
+                this.lagMillis,
+                System.identityHashCode(this)
+        );
+    }
+
+    /**
+     * @return the latency EWMA in nanoseconds
+     */
+    double latencyNanos() {
+        return Double.longBitsToDouble(this.latencyBits.get());
+    }
+
+    int pendingCount() {
+        return this.pendingCount.get();
+    }
+
+    long selectCount() {
+        return this.selectCount.sum();
+    }
+
+    long lagMillis() {
+        return this.lagMillis;
+    }
+
+    /**
+     * <p>
+     * The score of power-of-two-choices , lower is better. The pending count is multiplied ,
+     * so the replica that is slow and busy is avoided quickly.
+     * <br/>
+     */
+    double score() {
+        return (latencyNanos() + 1.0) * (this.pendingCount.get() + 1);
+    }
+
+    /**
+     * @param lagCeilingMillis 0 : no ceiling
+     * @param lagStaleNanos    0 : lag sample never is stale , else the lag sample that is older than it is treated as
+     *                         exceeding ceiling , for example : the probe of replica hang.
+     */
+    boolean isAvailable(final long nowNanos, final long lagCeilingMillis, final long lagStaleNanos) {
+        return nowNanos - this.evictUntilNanos >= 0
+                && (lagCeilingMillis == 0
+                || (this.lagMillis <= lagCeilingMillis
+                && (lagStaleNanos == 0 || nowNanos - this.lagSampleNanos <= lagStaleNanos)))
+                && !this.delegate.isClosed();
+    }
+
+    void onSelected() {
+        this.selectCount.increment();
+    }
+
+    /**
+     * <p>
+     * Record latency sample , for example : session opening , first row of query.
+     * <br/>
+     */
+    void recordLatency(final long nanos) {
+        final AtomicLong latencyBits = this.latencyBits;
+        long oldBits;
+        double old, ewma;
+        do {
+            oldBits = latencyBits.get();
+            old = Double.longBitsToDouble(oldBits);
+            ewma = old == 0.0 ? nanos : ALPHA * nanos + (1.0 - ALPHA) * old;
+        } while (!latencyBits.compareAndSet(oldBits, Double.doubleToRawLongBits(ewma)));
+    }
+
+    void recordSuccess() {
+        if (this.failureCount.get() != 0) {
+            this.failureCount.set(0);
+        }
+    }
+
+    /**
+     * <p>
+     * Evict replica for a while after {@link #evictThreshold} consecutive failures.
+     * <br/>
+     *
+     * @return true : replica is evicted by this invoking
+     */
+    boolean recordFailure() {
+        if (this.failureCount.incrementAndGet() < this.evictThreshold) {
+            return false;
+        }
+        this.failureCount.set(0);
+        this.evictUntilNanos = System.nanoTime() + this.evictNanos;
+        return true;
+    }
+
+    void updateLag(final long lagMillis) {
+        this.lagMillis = lagMillis;
+        this.lagSampleNanos = System.nanoTime();
+    }
+
+    /**
+     * @return true : no probe of this replica is in flight , the caller must invoke {@link #endProbe()} after probe terminate.
+     */
+    boolean startProbe() {
+        return this.probing.compareAndSet(false, true);
+    }
+
+    void endProbe() {
+        this.probing.set(false);
+    }
+
+    /*################################## blow private method ##################################*/
+
+    private <S> Mono<S> measure(final Publisher<S> publisher) {
+        return Mono.defer(() -> {
+            final long startNanos = System.nanoTime();
+            this.pendingCount.incrementAndGet();
+            return Mono.from(publisher)
+                    .doOnNext(session -> {
+                        recordLatency(System.nanoTime() - startNanos);
+                        recordSuccess();
+                    })
+                    .doOnError(error -> recordFailure())
+                    .doFinally(signal -> this.pendingCount.decrementAndGet());
+        });
+    }
+
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.session.DatabaseSessionFactory;
+import org.reactivestreams.Publisher;
+
+/**
+ * <p>
+ * This interface measure the replication lag of replica , it's vendor-specific , for example :
+ * <ul>
+ *     <li>MySQL : {@code SHOW REPLICA STATUS} , Seconds_Behind_Source</li>
+ *     <li>PostgreSQL : {@code SELECT now() - pg_last_xact_replay_timestamp()}</li>
+ * </ul>
+ * This interface is implemented by application developer or driver vendor.
+ * <br/>
+ *
+ * @see JdbdReadWriteSplittingFactory.Builder#lagCeiling(java.time.Duration, ReplicaLagProbe)
+ * @since 1.0
+ */
+public interface ReplicaLagProbe {
+
+    /**
+     * @param replica the factory of replica
+     * @return the {@link Publisher} that emit the replication lag in milliseconds , like {@code reactor.core.publisher.Mono}
+     */
+    Publisher<Long> lagMillis(DatabaseSessionFactory replica);
+
+}
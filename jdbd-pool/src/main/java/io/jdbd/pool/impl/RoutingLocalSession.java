@@ -0,0 +1,667 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.JdbdException;
+import io.jdbd.lang.Nullable;
+import io.jdbd.meta.DataType;
+import io.jdbd.meta.DatabaseMetaData;
+import io.jdbd.meta.ServerMode;
+import io.jdbd.result.*;
+import io.jdbd.session.*;
+import io.jdbd.statement.BindStatement;
+import io.jdbd.statement.MultiStatement;
+import io.jdbd.statement.PreparedStatement;
+import io.jdbd.statement.StaticStatement;
+import io.jdbd.util.EscapeMode;
+import io.jdbd.util.NameMode;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * This class is a facade of one primary session and one optional replica session , it's created by
+ * {@link JdbdReadWriteSplittingFactory#routingSession(String, Function)}.
+ * <br/>
+ * <p>
+ * Routing rule :
+ * <ul>
+ *     <li>the statement is routed to replica only if all of following conditions are met :
+ *          <ul>
+ *              <li>the sql is read-only , see {@link SqlClassifier#isReadOnly(String)}</li>
+ *              <li>primary session isn't in transaction , see {@link #inTransaction()}</li>
+ *              <li>no write is in flight on primary</li>
+ *              <li>the read-your-writes window is over , the window is opened when each write and each commit terminate ,
+ *              so the window is measured from the time that primary have applied the write.</li>
+ *          </ul>
+ *     </li>
+ *     <li>other statement , transaction , save point , cursor are routed to primary</li>
+ *     <li>{@link #statement()} , {@link #multiStatement()} are routed to primary , because the sql is unknown before executing.
+ *     These statements and the {@link #bindStatement(String)} , {@link #prepareStatement(String)} of write are executed
+ *     after this class return them , so they open the read-your-writes window when they are created ,
+ *     the application should use {@link #executeUpdate(String)} etc. if the window should cover slow write.</li>
+ *     <li>the window is extended when each result of {@link #executeBatchAsMulti(List)} of write terminate.</li>
+ *     <li>this session is pinned to primary for ever , after the statement that change session state ,
+ *     see {@link SqlClassifier#isSessionState(String)} , or after {@link #setTransactionCharacteristics(TransactionOption)} ,
+ *     because replica session don't have the session state. The sql of {@link #statement()} and {@link #multiStatement()}
+ *     is unknown , so application should use {@link #executeUpdate(String)} to change session state.</li>
+ * </ul>
+ * <br/>
+ *
+ * @since 1.0
+ */
+final class RoutingLocalSession implements LocalDatabaseSession {
+
+    private final LocalDatabaseSession primary;
+
+    private final LocalDatabaseSession replica;
+
+    private final long stickyNanos;
+
+    /**
+     * the end of read-your-writes window
+     */
+    private volatile long stickyUntilNanos;
+
+    /**
+     * the count of writes that are in flight on primary.
+     */
+    private final AtomicInteger writingCount = new AtomicInteger(0);
+
+    /**
+     * true : session state have been changed on primary , all statements are routed to primary.
+     */
+    private volatile boolean pinned;
+
+    /**
+     * @param replica null : no available replica , all statements are routed to primary.
+     */
+    RoutingLocalSession(LocalDatabaseSession primary, @Nullable LocalDatabaseSession replica, long stickyNanos) {
+        this.primary = primary;
+        this.replica = replica;
+        this.stickyNanos = stickyNanos;
+        this.stickyUntilNanos = System.nanoTime();
+    }
+
+    @Override
+    public Publisher<ResultStates> executeUpdate(String sql) {
+        if (SqlClassifier.isReadOnly(sql)) {
+            return read().executeUpdate(sql);
+        }
+        pinIfSessionState(sql);
+        return trackWrite(this.primary.executeUpdate(sql));
+    }
+
+    @Override
+    public Publisher<ResultRow> executeQuery(String sql) {
+        if (SqlClassifier.isReadOnly(sql)) {
+            return read().executeQuery(sql);
+        }
+        pinIfSessionState(sql);
+        return trackWrite(this.primary.executeQuery(sql));
+    }
+
+    @Override
+    public <R> Publisher<R> executeQuery(String sql, Function<CurrentRow, R> rowFunc) {
+        if (SqlClassifier.isReadOnly(sql)) {
+            return read().executeQuery(sql, rowFunc);
+        }
+        pinIfSessionState(sql);
+        return trackWrite(this.primary.executeQuery(sql, rowFunc));
+    }
+
+    @Override
+    public <R> Publisher<R> executeQuery(String sql, Function<CurrentRow, R> rowFunc, Consumer<ResultStates> statesConsumer) {
+        if (SqlClassifier.isReadOnly(sql)) {
+            return read().executeQuery(sql, rowFunc, statesConsumer);
+        }
+        pinIfSessionState(sql);
+        return trackWrite(this.primary.executeQuery(sql, rowFunc, statesConsumer));
+    }
+
+    @Override
+    public Publisher<ResultStates> executeBatchUpdate(List<String> sqlGroup) {
+        if (isReadOnly(sqlGroup)) {
+            return read().executeBatchUpdate(sqlGroup);
+        }
+        pinIfSessionState(sqlGroup);
+        return trackWrite(this.primary.executeBatchUpdate(sqlGroup));
+    }
+
+    @Override
+    public QueryResults executeBatchQuery(List<String> sqlGroup) {
+        return route(sqlGroup).executeBatchQuery(sqlGroup);
+    }
+
+    @Override
+    public MultiResult executeBatchAsMulti(List<String> sqlGroup) {
+        if (isReadOnly(sqlGroup)) {
+            return read().executeBatchAsMulti(sqlGroup);
+        }
+        pinIfSessionState(sqlGroup);
+        return new WriteMultiResult(this, write().executeBatchAsMulti(sqlGroup));
+    }
+
+    @Override
+    public OrderedFlux executeBatchAsFlux(List<String> sqlGroup) {
+        if (isReadOnly(sqlGroup)) {
+            return read().executeBatchAsFlux(sqlGroup);
+        }
+        pinIfSessionState(sqlGroup);
+        return trackWrite(this.primary.executeBatchAsFlux(sqlGroup));
+    }
+
+    @Override
+    public OrderedFlux executeMultiStmt(String multiStmt) {
+        pinIfSessionState(multiStmt);
+        return trackWrite(this.primary.executeMultiStmt(multiStmt));
+    }
+
+    @Override
+    public StaticStatement statement() {
+        return write().statement();
+    }
+
+    @Override
+    public Publisher<PreparedStatement> prepareStatement(String sql) {
+        return route(sql).prepareStatement(sql);
+    }
+
+    @Override
+    public BindStatement bindStatement(String sql) {
+        return route(sql).bindStatement(sql);
+    }
+
+    @Override
+    public BindStatement bindStatement(String sql, boolean forceServerPrepared) {
+        return route(sql).bindStatement(sql, forceServerPrepared);
+    }
+
+    @Override
+    public MultiStatement multiStatement() throws JdbdException {
+        return write().multiStatement();
+    }
+
+    @Override
+    public Publisher<TransactionInfo> startTransaction() {
+        return this.primary.startTransaction();
+    }
+
+    @Override
+    public Publisher<TransactionInfo> startTransaction(TransactionOption option) {
+        return this.primary.startTransaction(option);
+    }
+
+    @Override
+    public Publisher<TransactionInfo> startTransaction(TransactionOption option, HandleMode mode) {
+        return this.primary.startTransaction(option, mode);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> commit() {
+        return trackWrite(this.primary.commit())
+                .then(Mono.just(this));
+    }
+
+    @Override
+    public Publisher<Optional<TransactionInfo>> commit(Function<Option<?>, ?> optionFunc) {
+        return trackWrite(this.primary.commit(optionFunc));
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> rollback() {
+        return Mono.from(this.primary.rollback())
+                .thenReturn(this);
+    }
+
+    @Override
+    public Publisher<Optional<TransactionInfo>> rollback(Function<Option<?>, ?> optionFunc) {
+        return this.primary.rollback(optionFunc);
+    }
+
+    @Override
+    public boolean inTransaction() throws JdbdException {
+        return this.primary.inTransaction();
+    }
+
+    @Override
+    public Publisher<TransactionInfo> transactionInfo() {
+        return this.primary.transactionInfo();
+    }
+
+    @Override
+    public Publisher<TransactionInfo> transactionInfo(Function<Option<?>, ?> optionFunc) {
+        return this.primary.transactionInfo(optionFunc);
+    }
+
+    @Override
+    public Publisher<TransactionInfo> sessionTransactionCharacteristics() {
+        return this.primary.sessionTransactionCharacteristics();
+    }
+
+    @Override
+    public Publisher<TransactionInfo> sessionTransactionCharacteristics(Function<Option<?>, ?> optionFunc) {
+        return this.primary.sessionTransactionCharacteristics(optionFunc);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> setTransactionCharacteristics(TransactionOption option) {
+        this.pinned = true;
+        return Mono.from(this.primary.setTransactionCharacteristics(option))
+                .thenReturn(this);
+    }
+
+    @Override
+    public Publisher<SavePoint> setSavePoint() {
+        return this.primary.setSavePoint();
+    }
+
+    @Override
+    public Publisher<SavePoint> setSavePoint(Function<Option<?>, ?> optionFunc) {
+        return this.primary.setSavePoint(optionFunc);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> releaseSavePoint(SavePoint savepoint) {
+        return Mono.from(this.primary.releaseSavePoint(savepoint))
+                .thenReturn(this);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> releaseSavePoint(SavePoint savepoint, Function<Option<?>, ?> optionFunc) {
+        return Mono.from(this.primary.releaseSavePoint(savepoint, optionFunc))
+                .thenReturn(this);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> rollbackToSavePoint(SavePoint savepoint) {
+        return Mono.from(this.primary.rollbackToSavePoint(savepoint))
+                .thenReturn(this);
+    }
+
+    @Override
+    public Publisher<LocalDatabaseSession> rollbackToSavePoint(SavePoint savepoint, Function<Option<?>, ?> optionFunc) {
+        return Mono.from(this.primary.rollbackToSavePoint(savepoint, optionFunc))
+                .thenReturn(this);
+    }
+
+    @Override
+    public Cursor refCursor(String name) throws JdbdException {
+        return this.primary.refCursor(name);
+    }
+
+    @Override
+    public Cursor refCursor(String name, Function<Option<?>, ?> optionFunc) throws JdbdException {
+        return this.primary.refCursor(name, optionFunc);
+    }
+
+    @Override
+    public String name() {
+        return this.primary.name();
+    }
+
+    @Override
+    public String factoryName() {
+        return this.primary.factoryName();
+    }
+
+    @Override
+    public long sessionIdentifier() throws JdbdException {
+        return this.primary.sessionIdentifier();
+    }
+
+    @Override
+    public DatabaseMetaData databaseMetaData() throws JdbdException {
+        return this.primary.databaseMetaData();
+    }
+
+    @Override
+    public ServerVersion serverVersion() throws JdbdException {
+        return this.primary.serverVersion();
+    }
+
+    @Override
+    public String factoryVendor() {
+        return this.primary.factoryVendor();
+    }
+
+    @Override
+    public String driverVendor() {
+        return this.primary.driverVendor();
+    }
+
+    @Override
+    public boolean isSupportSavePoints() throws JdbdException {
+        return this.primary.isSupportSavePoints();
+    }
+
+    @Override
+    public boolean isSupportStmtVar() throws JdbdException {
+        return this.primary.isSupportStmtVar();
+    }
+
+    @Override
+    public boolean isSupportMultiStatement() throws JdbdException {
+        return this.primary.isSupportMultiStatement();
+    }
+
+    @Override
+    public boolean isSupportOutParameter() throws JdbdException {
+        return this.primary.isSupportOutParameter();
+    }
+
+    @Override
+    public boolean isSupportStoredProcedures() throws JdbdException {
+        return this.primary.isSupportStoredProcedures();
+    }
+
+    @Override
+    public boolean isSupportRefCursor() throws JdbdException {
+        return this.primary.isSupportRefCursor();
+    }
+
+    @Override
+    public boolean iSupportLocalTransaction() throws JdbdException {
+        return this.primary.iSupportLocalTransaction();
+    }
+
+    @Override
+    public boolean isSupportImportPublisher() throws JdbdException {
+        return this.primary.isSupportImportPublisher();
+    }
+
+    @Override
+    public boolean isSupportExportSubscriber() throws JdbdException {
+        return this.primary.isSupportExportSubscriber();
+    }
+
+    @Override
+    public ServerMode serverMode() throws JdbdException {
+        return this.primary.serverMode();
+    }
+
+    @Override
+    public String supportProductFamily() {
+        return this.primary.supportProductFamily();
+    }
+
+    @Override
+    public LocalDatabaseSession appendLiteral(DataType type, @Nullable Object value, EscapeMode mode,
+                                              StringBuilder builder) throws JdbdException {
+        this.primary.appendLiteral(type, value, mode, builder);
+        return this;
+    }
+
+    @Override
+    public LocalDatabaseSession appendIdentifier(String identifier, StringBuilder builder) throws JdbdException {
+        this.primary.appendIdentifier(identifier, builder);
+        return this;
+    }
+
+    @Override
+    public LocalDatabaseSession appendTableName(String tableName, NameMode mode, StringBuilder builder)
+            throws JdbdException {
+        this.primary.appendTableName(tableName, mode, builder);
+        return this;
+    }
+
+    @Override
+    public LocalDatabaseSession appendColumnName(String columnName, NameMode mode, StringBuilder builder)
+            throws JdbdException {
+        this.primary.appendColumnName(columnName, mode, builder);
+        return this;
+    }
+
+    @Override
+    public boolean isSameFactory(DatabaseSession session) {
+        final DatabaseSession other;
+        if (session instanceof RoutingLocalSession) {
+            other = ((RoutingLocalSession) session).primary;
+        } else {
+            other = session;
+        }
+        return this.primary.isSameFactory(other);
+    }
+
+    @Nullable
+    @Override
+    public <T> T valueOf(Option<T> option) throws JdbdException {
+        return this.primary.valueOf(option);
+    }
+
+    @Override
+    public Set<Option<?>> optionSet() {
+        return this.primary.optionSet();
+    }
+
+    /**
+     * <p>
+     * Close primary session and replica session.
+     * <br/>
+     */
+    @Override
+    public <T> Publisher<T> close() {
+        final LocalDatabaseSession replica = this.replica;
+        if (replica == null) {
+            return this.primary.close();
+        }
+        return Flux.mergeDelayError(2, Mono.from(this.primary.close()), Mono.from(replica.close()))
+                .then(Mono.empty());
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.primary.isClosed();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[ primary : %s , replica : %s , pinned : %s , hash : %s]",
+                getClass().getName(),
+                this.primary,
+                this.replica,
+                this.pinned,
+                System.identityHashCode(this)
+        );
+    }
+
+    /*################################## blow private method ##################################*/
+
+    /**
+     * <p>
+     * Route the statement that is executed after creating , see {@link #write()}.
+     * <br/>
+     */
+    private LocalDatabaseSession route(final String sql) {
+        if (SqlClassifier.isReadOnly(sql)) {
+            return read();
+        }
+        pinIfSessionState(sql);
+        return write();
+    }
+
+    private LocalDatabaseSession route(final List<String> sqlGroup) {
+        if (isReadOnly(sqlGroup)) {
+            return read();
+        }
+        pinIfSessionState(sqlGroup);
+        return write();
+    }
+
+    /**
+     * @return replica if readable , else primary. Read in read-your-writes window or in transaction don't extend window.
+     */
+    private LocalDatabaseSession read() {
+        return isReplicaReadable() ? this.replica : this.primary;
+    }
+
+    private boolean isReplicaReadable() {
+        final LocalDatabaseSession replica = this.replica;
+        return replica != null
+                && !this.pinned
+                && !replica.isClosed()
+                && this.writingCount.get() == 0
+                && System.nanoTime() - this.stickyUntilNanos >= 0
+                && !this.primary.inTransaction();
+    }
+
+    /**
+     * <p>
+     * Track the write that is executed by primary , the write is in flight from subscribing to terminating ,
+     * and the read-your-writes window is opened when the write terminate.
+     * <br/>
+     */
+    private <T> Flux<T> trackWrite(final Publisher<T> publisher) {
+        return Flux.defer(() -> {
+                    this.writingCount.incrementAndGet();
+                    return Flux.from(publisher);
+                })
+                .doFinally(signal -> {
+                    // open window before decrement , so no read is routed to replica between them
+                    openWindow();
+                    this.writingCount.decrementAndGet();
+                });
+    }
+
+    private OrderedFlux trackWrite(final OrderedFlux flux) {
+        final Flux<ResultItem> tracked = trackWrite((Publisher<ResultItem>) flux);
+        return tracked::subscribe;
+    }
+
+    /**
+     * @return primary session , and open read-your-writes window if not in transaction ,
+     * for the statement that is executed after creating.
+     */
+    private LocalDatabaseSession write() {
+        final LocalDatabaseSession primary = this.primary;
+        if (!primary.isClosed() && !primary.inTransaction()) {
+            openWindow();
+        }
+        return primary;
+    }
+
+    /**
+     * <p>
+     * Pin before executing , so no read is routed to replica even if the statement is in flight or failure.
+     * <br/>
+     */
+    private void pinIfSessionState(final String sql) {
+        if (!this.pinned && SqlClassifier.isSessionState(sql)) {
+            this.pinned = true;
+        }
+    }
+
+    private void pinIfSessionState(final List<String> sqlGroup) {
+        for (String sql : sqlGroup) {
+            pinIfSessionState(sql);
+        }
+    }
+
+    private void openWindow() {
+        this.stickyUntilNanos = System.nanoTime() + this.stickyNanos;
+    }
+
+    private static boolean isReadOnly(final List<String> sqlGroup) {
+        for (String sql : sqlGroup) {
+            if (!SqlClassifier.isReadOnly(sql)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * <p>
+     * The {@link MultiResult} of write , each result is tracked by {@link #trackWrite(Publisher)} ,
+     * because the end of last result is unknown.
+     * <br/>
+     */
+    private static final class WriteMultiResult implements MultiResult {
+
+        private final RoutingLocalSession session;
+
+        private final MultiResult delegate;
+
+        private WriteMultiResult(RoutingLocalSession session, MultiResult delegate) {
+            this.session = session;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Publisher<ResultStates> nextUpdate() {
+            return this.session.trackWrite(this.delegate.nextUpdate());
+        }
+
+        @Override
+        public <M extends Publisher<ResultStates>> M nextUpdate(Function<Publisher<ResultStates>, M> monoFunc) {
+            return this.delegate.nextUpdate(p -> monoFunc.apply(Mono.from(this.session.trackWrite(p))));
+        }
+
+        @Override
+        public Publisher<ResultRow> nextQuery() {
+            return this.session.trackWrite(this.delegate.nextQuery());
+        }
+
+        @Override
+        public <R> Publisher<R> nextQuery(Function<CurrentRow, R> rowFunc) {
+            return this.session.trackWrite(this.delegate.nextQuery(rowFunc));
+        }
+
+        @Override
+        public <R> Publisher<R> nextQuery(Function<CurrentRow, R> rowFunc, Consumer<ResultStates> statesConsumer) {
+            return this.session.trackWrite(this.delegate.nextQuery(rowFunc, statesConsumer));
+        }
+
+        @Override
+        public <R, F extends Publisher<R>> F nextQuery(Function<CurrentRow, R> rowFunc,
+                                                       Consumer<ResultStates> statesConsumer,
+                                                       Function<Publisher<R>, F> fluxFunc) {
+            return this.delegate.nextQuery(rowFunc, statesConsumer, p -> fluxFunc.apply(this.session.trackWrite(p)));
+        }
+
+        @Override
+        public OrderedFlux nextQueryFlux() {
+            return this.session.trackWrite(this.delegate.nextQueryFlux());
+        }
+
+        @Override
+        public <F extends Publisher<ResultItem>> F nextQueryFlux(Function<OrderedFlux, F> fluxFunc) {
+            return this.delegate.nextQueryFlux(f -> fluxFunc.apply(this.session.trackWrite(f)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[ delegate : %s , hash : %s]",
+                    getClass().getName(),
+                    this.delegate,
+                    System.identityHashCode(this)
+            );
+        }
+
+    }//WriteMultiResult
+
+
+}
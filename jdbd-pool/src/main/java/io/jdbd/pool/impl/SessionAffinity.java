@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.lang.Nullable;
+import io.jdbd.pool.PoolDatabaseSession;
+
+/**
+ * <p>
+ * This interface representing the affinity between session and thread , {@link JdbdSessionPool} is partitioned by
+ * {@link #keyOf(PoolDatabaseSession)} , so the borrower that run in {@link #currentKey()} thread get the session
+ * of same key without cross-thread hop , for example : the key is the netty EventLoop of session channel.
+ * <br/>
+ * <p>
+ * This interface is implemented by driver vendor or application developer, for example :
+ * <pre><code>
+ *     new SessionAffinity&lt;PoolLocalDatabaseSession&gt;() {
+ *
+ *         public Object keyOf(PoolLocalDatabaseSession session) {
+ *             return ((MySession) session).eventLoop();
+ *         }
+ *
+ *         public Object currentKey() {
+ *             return io.netty.util.internal.ThreadExecutorMap.currentExecutor();
+ *         }
+ *     }
+ * </code></pre>
+ * <br/>
+ *
+ * @param <S> the java type of session
+ * @since 1.0
+ */
+public interface SessionAffinity<S extends PoolDatabaseSession> {
+
+    /**
+     * <p>
+     * The implementation should return non-null key , {@link JdbdSessionPool} put the session whose key is null into the
+     * partition of {@link #none()} , so that session is never local to any {@link #currentKey()}.
+     * <br/>
+     *
+     * @return the key of session , the keys are compared by {@link Object#equals(Object)} , for example : EventLoop.
+     */
+    Object keyOf(S session);
+
+    /**
+     * <p>
+     * This method is invoked when every borrowing , so this method should be fast and allocation-free.
+     * <br/>
+     *
+     * @return the key of current thread , null : current thread don't have affinity , for example : current thread isn't EventLoop.
+     */
+    @Nullable
+    Object currentKey();
+
+    /**
+     * @return the affinity that put all sessions into one partition.
+     */
+    @SuppressWarnings("unchecked")
+    static <S extends PoolDatabaseSession> SessionAffinity<S> none() {
+        return (SessionAffinity<S>) NoAffinity.INSTANCE;
+    }
+
+}
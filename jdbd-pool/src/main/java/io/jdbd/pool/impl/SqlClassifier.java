@@ -0,0 +1,265 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+/**
+ * <p>
+ * This class classify sql for {@link RoutingLocalSession} , only the sql that is definitely read-only is routed to replica.
+ * The classification is conservative : any sql that this class can't prove read-only is write, for example : multi-statement ,
+ * locking read ({@code FOR UPDATE} , {@code LOCK IN SHARE MODE}) , {@code SELECT ... INTO} , data-modifying {@code WITH}.
+ * <br/>
+ * <p>
+ * The lexical rule of database are different , for example : backslash in string ({@code standard_conforming_strings} ,
+ * {@code NO_BACKSLASH_ESCAPES}) , {@code #} is comment in MySQL but XOR operator in PostgreSQL ,
+ * {@code --1} is comment in PostgreSQL but double minus in MySQL , {@code $$} quoting and {@code /*!} executable comment.
+ * So the sql that contains such token is write , because the statement boundary is unknown.
+ * <br/>
+ * <p>
+ * This class don't know the side effect of function (for example : {@code nextval()}),
+ * application should start transaction for such statement.
+ * <br/>
+ *
+ * @since 1.0
+ */
+abstract class SqlClassifier {
+
+    private SqlClassifier() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return true : sql is read-only , can be routed to replica.
+     */
+    static boolean isReadOnly(final String sql) {
+        final int length = sql.length();
+        int index = skipBlank(sql, 0);
+        // skip open parenthesis of (SELECT ...) UNION (SELECT ...)
+        while (index < length && sql.charAt(index) == '(') {
+            index = skipBlank(sql, index + 1);
+        }
+        final int wordEnd = wordEnd(sql, index);
+        final boolean readOnly;
+        switch (sql.substring(index, wordEnd).toUpperCase()) {
+            case "SHOW":
+            case "DESC":
+            case "DESCRIBE":
+                readOnly = isSingleStmt(sql, wordEnd);
+                break;
+            case "SELECT":
+            case "WITH":
+            case "VALUES":
+            case "TABLE":
+                readOnly = isPureQuery(sql, wordEnd);
+                break;
+            default:
+                readOnly = false;
+        }
+        return readOnly;
+    }
+
+    /**
+     * <p>
+     * The session state (for example : {@code SET search_path} , {@code SET time_zone} , {@code SET NAMES} , {@code USE db} ,
+     * user variable) is only applied to the session that execute the statement. The classification is conservative :
+     * multi-statement and the statement whose boundary is unknown are session state.
+     * <br/>
+     * <p>
+     * This class don't know the session state that is changed by function or procedure (for example : {@code set_config()}).
+     * <br/>
+     *
+     * @return true : sql possibly change session state.
+     */
+    static boolean isSessionState(final String sql) {
+        final int index = skipBlank(sql, 0);
+        final int wordEnd = wordEnd(sql, index);
+        final boolean sessionState;
+        switch (sql.substring(index, wordEnd).toUpperCase()) {
+            case "SET":
+            case "USE":
+            case "RESET":
+            case "DISCARD":
+                sessionState = true;
+                break;
+            default:
+                sessionState = !isSingleStmt(sql, wordEnd);
+        }
+        return sessionState;
+    }
+
+    /*################################## blow private method ##################################*/
+
+    /**
+     * @return true : no write keyword and no statement separator after offset.
+     */
+    private static boolean isPureQuery(final String sql, int offset) {
+        final int length = sql.length();
+        int wordEnd;
+        char ch;
+        while ((offset = skipBlank(sql, offset)) < length) {
+            ch = sql.charAt(offset);
+            if (ch == '\'' || ch == '"' || ch == '`') {
+                if ((offset = quoteEnd(sql, offset, ch)) < 0) {
+                    return false; // unclosed or ambiguous quote , be conservative
+                }
+            } else if (isAmbiguous(sql, offset)) {
+                return false;
+            } else if (ch == ';') {
+                return skipBlank(sql, offset + 1) == length;
+            } else if (Character.isLetter(ch) || ch == '_') {
+                wordEnd = wordEnd(sql, offset);
+                if (isWriteKeyword(sql.substring(offset, wordEnd))) {
+                    return false;
+                }
+                offset = wordEnd;
+            } else {
+                offset++;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSingleStmt(final String sql, int offset) {
+        final int length = sql.length();
+        char ch;
+        while ((offset = skipBlank(sql, offset)) < length) {
+            ch = sql.charAt(offset);
+            if (ch == '\'' || ch == '"' || ch == '`') {
+                if ((offset = quoteEnd(sql, offset, ch)) < 0) {
+                    return false; // unclosed or ambiguous quote , be conservative
+                }
+            } else if (isAmbiguous(sql, offset)) {
+                return false;
+            } else if (ch == ';') {
+                return skipBlank(sql, offset + 1) == length;
+            } else {
+                offset++;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWriteKeyword(final String word) {
+        final boolean write;
+        switch (word.toUpperCase()) {
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "MERGE":
+            case "REPLACE":
+            case "INTO":
+            case "FOR":
+            case "LOCK":
+                write = true;
+                break;
+            default:
+                write = false;
+        }
+        return write;
+    }
+
+    /**
+     * @return the index after whitespace and the comments that all database agree on ,
+     * that is : {@code -- } followed by whitespace and {@code /* } that isn't {@code /*!} .
+     * @see #isAmbiguous(String, int)
+     */
+    private static int skipBlank(final String sql, int offset) {
+        final int length = sql.length();
+        char ch;
+        while (offset < length) {
+            ch = sql.charAt(offset);
+            if (Character.isWhitespace(ch)) {
+                offset++;
+            } else if (ch == '-' && offset + 2 < length && sql.charAt(offset + 1) == '-'
+                    && Character.isWhitespace(sql.charAt(offset + 2))) {
+                offset = lineEnd(sql, offset);
+            } else if (ch == '/' && offset + 2 < length && sql.charAt(offset + 1) == '*'
+                    && sql.charAt(offset + 2) != '!') {
+                final int end = sql.indexOf("*/", offset + 2);
+                offset = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return true : the token at offset is lexed differently by databases , the statement boundary is unknown.
+     */
+    private static boolean isAmbiguous(final String sql, final int offset) {
+        final char ch = sql.charAt(offset);
+        final boolean ambiguous;
+        switch (ch) {
+            case '#':  // MySQL comment , PostgreSQL XOR
+            case '$':  // PostgreSQL dollar quoting
+            case '\\':
+                ambiguous = true;
+                break;
+            case '-':  // comment that isn't followed by whitespace, see skipBlank()
+            case '/':  // executable comment , see skipBlank()
+                ambiguous = offset + 1 < sql.length() && sql.charAt(offset + 1) == (ch == '-' ? '-' : '*');
+                break;
+            default:
+                ambiguous = false;
+        }
+        return ambiguous;
+    }
+
+    private static int lineEnd(final String sql, final int offset) {
+        final int end = sql.indexOf('\n', offset);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static int wordEnd(final String sql, int offset) {
+        final int length = sql.length();
+        char ch;
+        while (offset < length) {
+            ch = sql.charAt(offset);
+            if (!Character.isLetterOrDigit(ch) && ch != '_' && ch != '$') {
+                break;
+            }
+            offset++;
+        }
+        return offset;
+    }
+
+    /**
+     * @return the index after close quote , -1 : unclosed quote or backslash in quote. The doubled quote is escape.
+     * Backslash is escape or not is decided by session ({@code NO_BACKSLASH_ESCAPES} , {@code standard_conforming_strings}),
+     * so the quote end is unknown.
+     */
+    private static int quoteEnd(final String sql, int offset, final char quote) {
+        final int length = sql.length();
+        char ch;
+        offset++;
+        while (offset < length) {
+            ch = sql.charAt(offset);
+            if (ch == '\\') {
+                return -1;
+            } else if (ch != quote) {
+                offset++;
+            } else if (offset + 1 < length && sql.charAt(offset + 1) == quote) {
+                offset += 2;
+            } else {
+                return offset + 1;
+            }
+        }
+        return -1;
+    }
+
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.testng.Assert.*;
+
+/**
+ * This class is a test class of {@link AdaptiveSizer}
+ */
+public class AdaptiveSizerTests {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+
+    /**
+     * @see AdaptiveSizer#evaluate(long, long, long, long, long, int, int)
+     */
+    @Test
+    public void shrinkAndGrow() {
+        final PoolConfig config = PoolConfig.builder()
+                .minIdle(2)
+                .maxSize(50)
+                .adaptiveInterval(Duration.ofSeconds(1))
+                .build();
+        long now = 0L, acquireCount = 0L, holdNanos = 0L;
+        final AdaptiveSizer sizer = new AdaptiveSizer(config, now);
+        assertEquals(sizer.limit(), 50);
+
+        // steady load : 100 acquires per second , hold 20 ms , Little's law : 2 sessions
+        int change;
+        for (int i = 0; i < 60; i++) {
+            now += WINDOW_NANOS;
+            acquireCount += 100;
+            holdNanos += 100 * 20_000_000L;
+            change = sizer.evaluate(now, acquireCount, 0L, holdNanos, acquireCount, 2, 0);
+            assertTrue(change <= 0);
+            if (i < AdaptiveSizer.SHRINK_WINDOWS - 1) {
+                assertEquals(change, 0, "hysteresis");
+            }
+        }
+        assertTrue(sizer.shrinkCount() > 0);
+        assertTrue(sizer.limit() >= sizer.lowerBound());
+        assertTrue(sizer.limit() <= Math.ceil(sizer.targetSize() / AdaptiveSizer.SHRINK_RATIO));
+        assertEquals(sizer.growCount(), 0);
+
+        // burst : 2000 acquires per second , borrowers wait
+        final int oldLimit = sizer.limit();
+        now += WINDOW_NANOS;
+        acquireCount += 2000;
+        holdNanos += 2000 * 20_000_000L;
+        change = sizer.evaluate(now, acquireCount, 2000 * 30_000_000L, holdNanos, acquireCount, oldLimit, 100);
+        assertTrue(change > 0);
+        assertEquals(sizer.growCount(), 1);
+        assertTrue(sizer.limit() > oldLimit);
+        assertTrue(sizer.limit() <= config.maxSize());
+    }
+
+    /**
+     * @see AdaptiveSizer#evaluate(long, long, long, long, long, int, int)
+     * @see AdaptiveSizer#utilization()
+     */
+    @Test
+    public void pendingIsDemand() {
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(20)
+                .targetAcquireWait(Duration.ofMillis(5))
+                .adaptiveInterval(Duration.ofSeconds(1))
+                .build();
+        final AdaptiveSizer noPending, pending;
+        noPending = new AdaptiveSizer(config, 0L);
+        pending = new AdaptiveSizer(config, 0L);
+
+        // half of sessions are borrowed , the borrowers that can't get session wait 10 ms
+        noPending.evaluate(WINDOW_NANOS, 10L, 10 * 10_000_000L, 0L, 0L, 10, 0);
+        pending.evaluate(WINDOW_NANOS, 10L, 10 * 10_000_000L, 0L, 0L, 10, 10);
+
+        assertEquals(noPending.utilization(), 0.3 * 0.5, 1e-9);
+        assertEquals(pending.utilization(), 0.3 * 1.0, 1e-9);
+    }
+
+
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.JdbdException;
+import io.jdbd.pool.PoolLocalDatabaseSession;
+import io.jdbd.session.DatabaseSessionFactory;
+import io.jdbd.session.LocalDatabaseSession;
+import io.jdbd.session.Option;
+import org.testng.annotations.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+
+/**
+ * This class is a test class of {@link JdbdReadWriteSplittingFactory}
+ */
+public class JdbdReadWriteSplittingFactoryTests {
+
+    private static final Function<Option<?>, ?> READ_ONLY = option -> option == Option.READ_ONLY_SESSION ? Boolean.TRUE : null;
+
+    /**
+     * @see JdbdReadWriteSplittingFactory#localSession(String, Function)
+     */
+    @Test(timeOut = 10_000)
+    public void latencyWeighted() {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final DatabaseSessionFactory primary, fast, slow;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap);
+        fast = createFactory("fast", Duration.ZERO, new AtomicBoolean(false), openMap);
+        slow = createFactory("slow", Duration.ofMillis(30), new AtomicBoolean(false), openMap);
+
+        final JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(fast)
+                .replica(slow)
+                .build();
+
+        assertSame(factory.readWriteFactory(o -> null), primary);
+        Mono.from(factory.localSession(null, o -> null)).block();
+        assertEquals(count(openMap, "primary"), 1);
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(Mono.from(factory.localSession(null, READ_ONLY)).block());
+        }
+        assertEquals(count(openMap, "primary"), 1);
+        assertTrue(count(openMap, "fast") > count(openMap, "slow") * 5, openMap.toString());
+        assertEquals(factory.fallbackCount(), 0);
+
+        Mono.from(factory.close()).block();
+        assertTrue(factory.isClosed());
+    }
+
+    /**
+     * @see ReplicaFactory#recordFailure()
+     */
+    @Test(timeOut = 10_000)
+    public void evictAndFallback() {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final AtomicBoolean broken = new AtomicBoolean(true);
+        final DatabaseSessionFactory primary, replica;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap);
+        replica = createFactory("replica", Duration.ZERO, broken, openMap);
+
+        JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(replica)
+                .evictThreshold(2)
+                .evictDuration(Duration.ofMillis(200))
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                Mono.from(factory.localSession(null, READ_ONLY)).block();
+                fail("replica is broken");
+            } catch (JdbdException e) {
+                // expected
+            }
+        }
+        assertEquals(factory.availableReplicaCount(), 0);
+
+        // fall back to primary
+        assertNotNull(Mono.from(factory.localSession(null, READ_ONLY)).block());
+        assertEquals(count(openMap, "primary"), 1);
+        assertEquals(factory.fallbackCount(), 1);
+
+        // re-admitted after evict duration
+        broken.set(false);
+        Mono.delay(Duration.ofMillis(300)).block();
+        assertEquals(factory.availableReplicaCount(), 1);
+        assertNotNull(Mono.from(factory.localSession(null, READ_ONLY)).block());
+        assertEquals(count(openMap, "replica"), 1);
+
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .fallbackToPrimary(false)
+                .build();
+        try {
+            Mono.from(factory.localSession(null, READ_ONLY)).block();
+            fail("no available replica");
+        } catch (JdbdException e) {
+            // expected
+        }
+    }
+
+    /**
+     * @see JdbdReadWriteSplittingFactory#probeLag()
+     */
+    @Test(timeOut = 10_000)
+    public void lagCeiling() throws Exception {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final DatabaseSessionFactory primary, fresh, stale;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap);
+        fresh = createFactory("fresh", Duration.ZERO, new AtomicBoolean(false), openMap);
+        stale = createFactory("stale", Duration.ZERO, new AtomicBoolean(false), openMap);
+
+        try {
+            JdbdReadWriteSplittingFactory.builder(primary)
+                    .replica(stale)
+                    .lagCeiling(Duration.ofMillis(100), r -> Mono.just(10L))
+                    .probeInterval(Duration.ZERO)
+                    .build();
+            fail("ceiling without probing is never enforced");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        final JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(fresh)
+                .replica(stale)
+                .lagCeiling(Duration.ofMillis(100), r -> Mono.just(r == stale ? 500L : 10L))
+                .probeInterval(Duration.ofHours(1))
+                .build();
+
+        factory.probeLag();
+        // the first background probe maybe in flight , the manual probe skip the replica that is being probed
+        while (factory.availableReplicaCount() != 1) {
+            Thread.sleep(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(factory.readOnlyFactory(READ_ONLY).name(), "fresh");
+        }
+        assertEquals(factory.fallbackCount(), 0);
+        Mono.from(factory.close()).block();
+    }
+
+    /**
+     * @see JdbdReadWriteSplittingFactory#probeLag()
+     */
+    @Test(timeOut = 10_000)
+    public void hangingProbe() throws Exception {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final DatabaseSessionFactory primary, fresh, hanging;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap);
+        fresh = createFactory("fresh", Duration.ZERO, new AtomicBoolean(false), openMap);
+        hanging = createFactory("hanging", Duration.ZERO, new AtomicBoolean(false), openMap);
+
+        final AtomicInteger hangingProbeCount = new AtomicInteger(0);
+        final JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(fresh)
+                .replica(hanging)
+                .lagCeiling(Duration.ofMillis(100), r -> {
+                    if (r != hanging) {
+                        return Mono.just(10L);
+                    }
+                    hangingProbeCount.incrementAndGet();
+                    return Mono.never();
+                })
+                .probeInterval(Duration.ofMillis(500))
+                .build();
+
+        // the probe of hanging replica is in flight , so it isn't probed again
+        for (int i = 0; i < 3; i++) {
+            factory.probeLag();
+        }
+        assertEquals(hangingProbeCount.get(), 1);
+        // probe timeout , hanging replica is unavailable
+        while (factory.availableReplicaCount() != 1) {
+            Thread.sleep(20);
+        }
+        assertEquals(factory.readOnlyFactory(READ_ONLY).name(), "fresh");
+        Mono.from(factory.close()).block();
+    }
+
+
+    /**
+     * @see JdbdReadWriteSplittingFactory#routingSession(String, Function)
+     */
+    @Test(timeOut = 10_000)
+    public void routingSession() {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final List<String> executorList = new CopyOnWriteArrayList<>();
+        final DatabaseSessionFactory primary, replica;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap, executorList);
+        replica = createFactory("replica", Duration.ZERO, new AtomicBoolean(false), openMap, executorList);
+
+        final JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(replica)
+                .readYourWritesWindow(Duration.ofMillis(200))
+                .build();
+
+        final LocalDatabaseSession session;
+        session = Mono.from(factory.routingSession()).block();
+        assertNotNull(session);
+        assertEquals(count(openMap, "primary"), 1);
+        assertEquals(count(openMap, "replica"), 1);
+
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "replica");
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user FOR UPDATE"), "primary");
+
+        // read your writes
+        assertEquals(executeUpdate(session, executorList, "UPDATE t_user SET name = 'jdbd' WHERE id = 1"), "primary");
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+        Mono.delay(Duration.ofMillis(300)).block();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "replica");
+
+        // the write is in flight longer than window , the window is opened when write terminate
+        final Mono<Void> slowWrite;
+        slowWrite = Mono.from(session.executeUpdate("UPDATE t_user SET name = 'slow' WHERE id = 1")).then().cache();
+        slowWrite.subscribe();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+        slowWrite.block();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+        Mono.delay(Duration.ofMillis(300)).block();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "replica");
+
+        // transaction
+        Mono.from(session.startTransaction()).block();
+        assertTrue(session.inTransaction());
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+        assertSame(Mono.from(session.commit()).block(), session);
+        assertFalse(session.inTransaction());
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+        Mono.delay(Duration.ofMillis(300)).block();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "replica");
+
+        // session state is only on primary , so pinned to primary for ever
+        assertEquals(executeUpdate(session, executorList, "SET time_zone = '+00:00'"), "primary");
+        Mono.delay(Duration.ofMillis(300)).block();
+        assertEquals(executeQuery(session, executorList, "SELECT * FROM t_user"), "primary");
+
+        Mono.from(session.close()).block();
+    }
+
+    /**
+     * @see JdbdReadWriteSplittingFactory#hedgedQuery(String, Function)
+     */
+    @Test(timeOut = 20_000)
+    public void hedgedQuery() {
+        final Map<String, AtomicInteger> openMap = new ConcurrentHashMap<>();
+        final List<String> executorList = new CopyOnWriteArrayList<>();
+        final AtomicReference<Duration> latencyA = new AtomicReference<>(Duration.ZERO);
+        final DatabaseSessionFactory primary, replicaA, replicaB;
+        primary = createFactory("primary", Duration.ZERO, new AtomicBoolean(false), openMap, executorList);
+        replicaA = createFactory("a", Duration.ZERO, latencyA::get, new AtomicBoolean(false), openMap, executorList);
+        // b is a little slower , so power-of-two-choices prefer a
+        replicaB = createFactory("b", Duration.ofMillis(5), new AtomicBoolean(false), openMap, executorList);
+
+        final JdbdReadWriteSplittingFactory factory;
+        factory = JdbdReadWriteSplittingFactory.builder(primary)
+                .replica(replicaA)
+                .replica(replicaB)
+                .hedge(0.9, 0.1)
+                .build();
+
+        final String writeSql = "DELETE FROM t_user";
+        try {
+            Flux.from(factory.hedgedQuery(writeSql, row -> row)).blockLast();
+            fail("write can't be hedged");
+        } catch (JdbdException e) {
+            // expected
+        }
+
+        final String sql = "SELECT * FROM t_user";
+        for (long i = 0; i < JdbdReadWriteSplittingFactory.MIN_HEDGE_SAMPLES + 8; i++) {
+            assertNotNull(Flux.from(factory.hedgedQuery(sql, row -> row)).blockLast());
+        }
+        assertEquals(factory.hedgeCount(), 0);
+        // the session of replica is borrowed from pool , not opened for each query
+        assertEquals(count(openMap, "a"), 1);
+
+        // replica a become slow , the hedge to b win and a is canceled
+        latencyA.set(Duration.ofSeconds(5));
+        final long startNanos = System.nanoTime();
+        assertEquals(Flux.from(factory.<Object>hedgedQuery(sql, row -> row)).blockLast(), "b");
+        assertTrue(System.nanoTime() - startNanos < 2_000_000_000L);
+        assertEquals(factory.hedgeCount(), 1);
+        assertEquals(count(openMap, "primary"), 0);
+        assertEquals(count(openMap, "b"), 1);
+        Mono.from(factory.close()).block();
+    }
+
+    /**
+     * @see SqlClassifier#isReadOnly(String)
+     */
+    @Test
+    public void classifySql() {
+        assertTrue(SqlClassifier.isReadOnly("SELECT id FROM t_user WHERE name = 'update'"));
+        assertTrue(SqlClassifier.isReadOnly(" /* comment */ -- line comment\n (select 1) UNION (select 2) ; "));
+        assertTrue(SqlClassifier.isReadOnly("WITH cte AS (SELECT 1 AS id) SELECT id FROM cte"));
+        assertTrue(SqlClassifier.isReadOnly("SHOW TABLES"));
+
+        assertFalse(SqlClassifier.isReadOnly("UPDATE t_user SET name = 'select'"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT id FROM t_user FOR UPDATE"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT id INTO @id FROM t_user"));
+        assertFalse(SqlClassifier.isReadOnly("WITH d AS (DELETE FROM t_user RETURNING id) SELECT id FROM d"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 1 ; DELETE FROM t_user"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 'unclosed"));
+        assertFalse(SqlClassifier.isReadOnly("EXPLAIN ANALYZE DELETE FROM t_user"));
+        assertTrue(SqlClassifier.isSessionState("SET search_path TO app"));
+        assertTrue(SqlClassifier.isSessionState(" use db"));
+        assertTrue(SqlClassifier.isSessionState("UPDATE t_user SET name = 'a'; SET NAMES utf8mb4"));
+        assertFalse(SqlClassifier.isSessionState("UPDATE t_user SET name = ';'"));
+
+        // lexed differently by databases
+        assertFalse(SqlClassifier.isReadOnly("SELECT '\\'; DELETE FROM t; -- '"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 5 # 3; DELETE FROM t"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 1 # '\n; DELETE FROM t; -- '"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT $$'$$; DELETE FROM t; -- '"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 1 --1; DELETE FROM t"));
+        assertFalse(SqlClassifier.isReadOnly("SELECT 1 /*!; DELETE FROM t */"));
+    }
+
+
+    /**
+     * @return the name of factory that execute sql
+     */
+    private static String executeQuery(LocalDatabaseSession session, List<String> executorList, String sql) {
+        Flux.from(session.executeQuery(sql)).blockLast();
+        return executorList.get(executorList.size() - 1);
+    }
+
+    /**
+     * @return the name of factory that execute sql
+     */
+    private static String executeUpdate(LocalDatabaseSession session, List<String> executorList, String sql) {
+        Mono.from(session.executeUpdate(sql)).block();
+        return executorList.get(executorList.size() - 1);
+    }
+
+    private static int count(Map<String, AtomicInteger> openMap, String name) {
+        final AtomicInteger count = openMap.get(name);
+        return count == null ? 0 : count.get();
+    }
+
+    private static DatabaseSessionFactory createFactory(String name, Duration latency, AtomicBoolean broken,
+                                                        Map<String, AtomicInteger> openMap) {
+        return createFactory(name, latency, () -> Duration.ZERO, broken, openMap, new CopyOnWriteArrayList<>());
+    }
+
+    private static DatabaseSessionFactory createFactory(String name, Duration latency, AtomicBoolean broken,
+                                                        Map<String, AtomicInteger> openMap, List<String> executorList) {
+        return createFactory(name, latency, () -> Duration.ZERO, broken, openMap, executorList);
+    }
+
+    /**
+     * @param latency      the latency of session opening
+     * @param queryLatency the latency of the first row of query
+     * @param broken       true : open session failure
+     * @param executorList the list of factory name that execute statement
+     */
+    private static DatabaseSessionFactory createFactory(final String name, final Duration latency,
+                                                        final Supplier<Duration> queryLatency,
+                                                        final AtomicBoolean broken,
+                                                        final Map<String, AtomicInteger> openMap,
+                                                        final List<String> executorList) {
+        return (DatabaseSessionFactory) Proxy.newProxyInstance(JdbdReadWriteSplittingFactoryTests.class.getClassLoader(),
+                new Class<?>[]{DatabaseSessionFactory.class}, (proxy, method, args) -> {
+                    final Object result;
+                    switch (method.getName()) {
+                        case "name":
+                        case "toString":
+                            result = name;
+                            break;
+                        case "localSession": {
+                            final Mono<LocalDatabaseSession> mono;
+                            mono = Mono.delay(latency)
+                                    .flatMap(l -> {
+                                        if (broken.get()) {
+                                            return Mono.error(new JdbdException(name + " broken"));
+                                        }
+                                        openMap.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+                                        return Mono.just(createSession(name, executorList, queryLatency));
+                                    });
+                            result = mono;
+                        }
+                        break;
+                        case "isClosed":
+                            result = Boolean.FALSE;
+                            break;
+                        case "close":
+                            result = Mono.empty();
+                            break;
+                        case "hashCode":
+                            result = System.identityHashCode(proxy);
+                            break;
+                        case "equals":
+                            result = proxy == args[0];
+                            break;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                    return result;
+                });
+    }
+
+    private static LocalDatabaseSession createSession(final String factoryName, final List<String> executorList,
+                                                      final Supplier<Duration> queryLatency) {
+        final AtomicBoolean inTransaction = new AtomicBoolean(false);
+        return (LocalDatabaseSession) Proxy.newProxyInstance(JdbdReadWriteSplittingFactoryTests.class.getClassLoader(),
+                new Class<?>[]{PoolLocalDatabaseSession.class}, (proxy, method, args) -> {
+                    final Object result;
+                    switch (method.getName()) {
+                        case "executeQuery": {
+                            executorList.add(factoryName);
+                            // the row of executeQuery(sql,rowFunc) is factory name
+                            final Flux<Object> flux = args.length == 1 ? Flux.empty() : Flux.just(factoryName);
+                            final Duration latency = queryLatency.get();
+                            result = latency.isZero() ? flux : Mono.delay(latency).thenMany(flux);
+                        }
+                        break;
+                        case "ping":
+                        case "reset":
+                            result = Mono.just(proxy);
+                            break;
+                        case "isResetRequired":
+                            result = Boolean.FALSE;
+                            break;
+                        case "executeUpdate":
+                            executorList.add(factoryName);
+                            // slow write take 300 ms
+                            result = ((String) args[0]).contains("slow")
+                                    ? Mono.delay(Duration.ofMillis(300)).then()
+                                    : Mono.empty();
+                            break;
+                        case "startTransaction":
+                            inTransaction.set(true);
+                            result = Mono.empty();
+                            break;
+                        case "commit":
+                            inTransaction.set(false);
+                            result = Mono.just(proxy);
+                            break;
+                        case "inTransaction":
+                            result = inTransaction.get();
+                            break;
+                        case "isClosed":
+                            result = Boolean.FALSE;
+                            break;
+                        case "close":
+                            result = Mono.empty();
+                            break;
+                        case "name":
+                        case "toString":
+                            result = factoryName + "-session";
+                            break;
+                        case "hashCode":
+                            result = System.identityHashCode(proxy);
+                            break;
+                        case "equals":
+                            result = proxy == args[0];
+                            break;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                    return result;
+                });
+    }
+
+
+}
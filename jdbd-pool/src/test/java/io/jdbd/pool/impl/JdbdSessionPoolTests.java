@@ -0,0 +1,370 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.pool.impl;
+
+import io.jdbd.JdbdException;
+import io.jdbd.pool.PoolLocalDatabaseSession;
+import org.testng.annotations.Test;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * This class is a test class of {@link JdbdSessionPool}
+ */
+public class JdbdSessionPoolTests {
+
+
+    /**
+     * @see JdbdSessionPool#acquire()
+     * @see PooledSession#release()
+     */
+    @Test(timeOut = 10_000)
+    public void acquireAndRelease() {
+        final AtomicInteger resetCount = new AtomicInteger(0);
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(2)
+                .acquireTimeout(Duration.ofMillis(300))
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.just(createSession(new AtomicBoolean(false), resetCount)), config);
+
+        final PooledSession<PoolLocalDatabaseSession> lease1, lease2;
+        lease1 = pool.acquire().block();
+        lease2 = pool.acquire().block();
+        assertNotNull(lease1);
+        assertNotNull(lease2);
+        assertNotSame(lease1.session(), lease2.session());
+        assertEquals(pool.totalCount(), 2);
+
+        // pool is full
+        try {
+            pool.acquire().block();
+            fail("pool is full");
+        } catch (JdbdException e) {
+            // expected , timeout
+        }
+        assertEquals(pool.timeoutCount(), 1);
+        assertEquals(pool.pendingCount(), 0);
+
+        // waiter receive the released session
+        final Mono<PooledSession<PoolLocalDatabaseSession>> waiting = pool.acquire().cache();
+        waiting.subscribe();
+        assertEquals(pool.pendingCount(), 1);
+        lease1.release().block();
+        final PooledSession<PoolLocalDatabaseSession> lease3 = waiting.block();
+        assertNotNull(lease3);
+        assertSame(lease3.session(), lease1.session());
+        assertNotSame(lease3, lease1);
+        assertEquals(resetCount.get(), 1);
+        assertEquals(pool.createCount(), 2);
+
+        // stale lease don't release or invalidate the session of next borrower
+        lease1.release().block();
+        lease1.invalidate().block();
+        assertEquals(pool.idleCount(), 0);
+        assertEquals(pool.totalCount(), 2);
+        assertFalse(lease3.session().isClosed());
+        assertEquals(resetCount.get(), 1);
+
+        lease2.invalidate().block();
+        assertEquals(pool.totalCount(), 1);
+        lease3.release().block();
+        assertEquals(pool.idleCount(), 1);
+
+        pool.close().block();
+        assertTrue(pool.isClosed());
+        assertEquals(pool.totalCount(), 0);
+        try {
+            pool.acquire().block();
+            fail("pool have closed");
+        } catch (JdbdException e) {
+            // expected
+        }
+    }
+
+    /**
+     * @see JdbdSessionPool#maintain()
+     * @see PoolConfig#validateAfterIdle()
+     */
+    @Test(timeOut = 10_000)
+    public void validateAndEvict() throws Exception {
+        final AtomicBoolean broken = new AtomicBoolean(false);
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(2)
+                .maxIdleTime(Duration.ofMillis(50))
+                .validateAfterIdle(Duration.ZERO)
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.just(createSession(broken, new AtomicInteger())), config);
+
+        PooledSession<PoolLocalDatabaseSession> lease = pool.acquire().block();
+        assertNotNull(lease);
+        final PoolLocalDatabaseSession first = lease.session();
+        lease.release().block();
+
+        // ping failure , the broken session is closed and new session is created.
+        broken.set(true);
+        lease = pool.acquire().block();
+        assertNotNull(lease);
+        assertNotSame(lease.session(), first);
+        assertTrue(first.isClosed());
+        assertEquals(pool.destroyCount(), 1);
+        lease.release().block();
+
+        Thread.sleep(100);
+        pool.maintain();
+        assertEquals(pool.totalCount(), 0);
+        assertEquals(pool.idleCount(), 0);
+        pool.close().block();
+    }
+
+    /**
+     * @see JdbdSessionPool#maintain()
+     * @see PoolConfig#minIdle()
+     */
+    @Test(timeOut = 10_000)
+    public void evictKeepMinIdle() throws Exception {
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(4)
+                .minIdle(1)
+                .maxIdleTime(Duration.ofMillis(50))
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.just(createSession(new AtomicBoolean(false), new AtomicInteger())), config);
+
+        assertEquals(pool.warmUp(3).block(), Integer.valueOf(3));
+        Thread.sleep(100);
+        pool.maintain();
+        // idle timeout stop at minIdle , no close and reopen
+        assertEquals(pool.idleCount(), 1);
+        assertEquals(pool.totalCount(), 1);
+        assertEquals(pool.destroyCount(), 2);
+        assertEquals(pool.createCount(), 3);
+        pool.close().block();
+    }
+
+
+    /**
+     * @see SessionAffinity
+     * @see JdbdSessionPool#stealCount()
+     */
+    @Test(timeOut = 10_000)
+    public void partitionAffinity() {
+        final Map<Object, String> keyMap = new ConcurrentHashMap<>();
+        final AtomicInteger sequence = new AtomicInteger(0);
+        final ThreadLocal<String> currentKey = new ThreadLocal<>();
+        final SessionAffinity<PoolLocalDatabaseSession> affinity = new SessionAffinity<PoolLocalDatabaseSession>() {
+            @Override
+            public Object keyOf(PoolLocalDatabaseSession session) {
+                return keyMap.get(session);
+            }
+
+            @Override
+            public Object currentKey() {
+                return currentKey.get();
+            }
+        };
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(3)
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.fromSupplier(() -> {
+            final PoolLocalDatabaseSession session = createSession(new AtomicBoolean(false), new AtomicInteger());
+            final int index = sequence.getAndIncrement();
+            if (index < 2) {
+                keyMap.put(session, index == 0 ? "loop-A" : "loop-B");
+            } // third session : null key
+            return session;
+        }), config, affinity);
+
+        final PooledSession<PoolLocalDatabaseSession> leaseA, leaseB;
+        leaseA = pool.acquire().block();
+        leaseB = pool.acquire().block();
+        assertNotNull(leaseA);
+        assertNotNull(leaseB);
+        leaseA.release().block();
+        leaseB.release().block();
+        assertEquals(pool.partitionCount(), 2);
+
+        currentKey.set("loop-B");
+        final PooledSession<PoolLocalDatabaseSession> local, stolen;
+        local = pool.acquire().block();
+        assertNotNull(local);
+        assertSame(local.session(), leaseB.session());
+        assertEquals(pool.stealCount(), 0);
+
+        // local partition is empty
+        stolen = pool.acquire().block();
+        assertNotNull(stolen);
+        assertSame(stolen.session(), leaseA.session());
+        assertEquals(pool.stealCount(), 1);
+
+        // null key session is put into no affinity partition
+        final PooledSession<PoolLocalDatabaseSession> noKey = pool.acquire().block();
+        assertNotNull(noKey);
+        assertEquals(pool.partitionCount(), 3);
+        noKey.release().block();
+        assertEquals(pool.idleCount(), 1);
+
+        local.release().block();
+        stolen.release().block();
+        currentKey.remove();
+        pool.close().block();
+    }
+
+
+    /**
+     * @see JdbdSessionPool#warmUp()
+     * @see PoolConfig#warmUpConcurrency()
+     */
+    @Test(timeOut = 10_000)
+    public void warmUpAndRefill() throws Exception {
+        final AtomicInteger opening = new AtomicInteger(0), maxOpening = new AtomicInteger(0);
+        final PoolConfig config = PoolConfig.builder()
+                .minIdle(6)
+                .maxSize(10)
+                .warmUpConcurrency(3)
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.delay(Duration.ofMillis(50))
+                .doOnSubscribe(s -> maxOpening.accumulateAndGet(opening.incrementAndGet(), Math::max))
+                .map(l -> createSession(new AtomicBoolean(false), new AtomicInteger()))
+                .doOnNext(session -> opening.decrementAndGet()), config);
+
+        assertEquals(pool.warmUp().block(), Integer.valueOf(6));
+        assertEquals(maxOpening.get(), 3);
+        assertEquals(pool.idleCount(), 6);
+
+        // borrowing make idle count less than min idle
+        final PooledSession<PoolLocalDatabaseSession> lease = pool.acquire().block();
+        assertNotNull(lease);
+        while (pool.idleCount() < 6) {
+            Thread.sleep(10);
+        }
+        assertEquals(pool.totalCount(), 7);
+        assertEquals(pool.createCount(), 7);
+
+        lease.release().block();
+        pool.close().block();
+    }
+
+
+    /**
+     * @see PoolLocalDatabaseSession#isResetRequired()
+     * @see JdbdSessionPool#resetSkipCount()
+     */
+    @Test(timeOut = 10_000)
+    public void skipResetOfCleanSession() {
+        final AtomicInteger resetCount = new AtomicInteger(0);
+        final AtomicBoolean dirty = new AtomicBoolean(false), inTransaction = new AtomicBoolean(false);
+        final PoolConfig config = PoolConfig.builder()
+                .maxSize(1)
+                .maintenanceInterval(Duration.ZERO)
+                .build();
+        final JdbdSessionPool<PoolLocalDatabaseSession> pool;
+        pool = JdbdSessionPool.create(() -> Mono.just(createSession(new AtomicBoolean(false), resetCount, dirty, inTransaction)), config);
+
+        pool.withSession(session -> Mono.just(1)).blockLast();
+        assertEquals(resetCount.get(), 0);
+        assertEquals(pool.resetSkipCount(), 1);
+
+        // driver don't track transaction , but session in transaction
+        inTransaction.set(true);
+        pool.withSession(session -> Mono.just(1)).blockLast();
+        assertEquals(resetCount.get(), 1);
+        assertEquals(pool.resetSkipCount(), 1);
+        inTransaction.set(false);
+
+        dirty.set(true);
+        pool.withSession(session -> Mono.just(1)).blockLast();
+        assertEquals(resetCount.get(), 2);
+        assertEquals(pool.resetSkipCount(), 1);
+        assertEquals(pool.createCount(), 1);
+        pool.close().block();
+    }
+
+
+    static PoolLocalDatabaseSession createSession(final AtomicBoolean broken, final AtomicInteger resetCount) {
+        return createSession(broken, resetCount, new AtomicBoolean(true), new AtomicBoolean(false));
+    }
+
+    /**
+     * @param broken        the ping of sessions that are created before broken don't fail
+     * @param resetRequired the result of {@link PoolLocalDatabaseSession#isResetRequired()}
+     * @param inTransaction the result of {@link PoolLocalDatabaseSession#inTransaction()}
+     */
+    static PoolLocalDatabaseSession createSession(final AtomicBoolean broken, final AtomicInteger resetCount,
+                                                  final AtomicBoolean resetRequired, final AtomicBoolean inTransaction) {
+        final boolean brokenAfterCreate = !broken.get();
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        return (PoolLocalDatabaseSession) Proxy.newProxyInstance(JdbdSessionPoolTests.class.getClassLoader(),
+                new Class<?>[]{PoolLocalDatabaseSession.class}, (proxy, method, args) -> {
+                    final Object result;
+                    switch (method.getName()) {
+                        case "ping":
+                            result = brokenAfterCreate && broken.get()
+                                    ? Mono.error(new JdbdException("broken"))
+                                    : Mono.just(proxy);
+                            break;
+                        case "isResetRequired":
+                            result = resetRequired.get();
+                            break;
+                        case "inTransaction":
+                            result = inTransaction.get();
+                            break;
+                        case "reset":
+                            resetCount.incrementAndGet();
+                            result = Mono.just(proxy);
+                            break;
+                        case "close":
+                            closed.set(true);
+                            result = Mono.empty();
+                            break;
+                        case "isClosed":
+                            result = closed.get();
+                            break;
+                        case "hashCode":
+                            result = System.identityHashCode(proxy);
+                            break;
+                        case "equals":
+                            result = proxy == args[0];
+                            break;
+                        case "toString":
+                            result = "FakeSession@" + System.identityHashCode(proxy);
+                            break;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                    return result;
+                });
+    }
+
+
+}
@@ -55,6 +55,26 @@ public interface PoolDatabaseSession extends DatabaseSession {
      */
     Publisher<? extends PoolDatabaseSession> ping();
 
+    /**
+     * <p>
+     * Driver vendor should track the session state that is changed by borrower , for example :
+     * <ul>
+     *     <li>{@link #setTransactionCharacteristics(io.jdbd.session.TransactionOption)}</li>
+     *     <li>{@link io.jdbd.statement.Statement#bindStmtVar(String, io.jdbd.meta.DataType, Object)}</li>
+     *     <li>open {@link io.jdbd.result.Cursor}</li>
+     *     <li>{@link #setSavePoint()}</li>
+     *     <li>in transaction</li>
+     * </ul>
+     * so pool vendor don't invoke {@link #reset()} for clean session , and {@link #reset()} send only the commands that are needed.
+     * Pool vendor always invoke {@link #reset()} when {@link #inTransaction()} is true , even if this method return false.
+     * <br/>
+     *
+     * @return true : the session state have been changed since last {@link #reset()} , default true.
+     */
+    default boolean isResetRequired() {
+        return true;
+    }
+
 
     /**
      * <p>
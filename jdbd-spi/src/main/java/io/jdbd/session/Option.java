@@ -108,6 +108,23 @@ public final class Option<T> {
      */
     public static final Option<Long> START_MILLIS = Option.from("START MILLIS", Long.class);
 
+    /**
+     * <p>
+     * Representing the absolute deadline ({@link System#currentTimeMillis()} based) of request , for example : 50 ms budget of
+     * one http request that execute several statements in a transaction.
+     * <br/>
+     * <p>
+     * The deadline can be specified by following :
+     *     <ul>
+     *         <li>{@link io.jdbd.statement.Statement#setOption(Option, Object)}</li>
+     *         <li>the Context of subscriber , this option is the key of Context , for example : {@code contextWrite(Context.of(Option.DEADLINE_MILLIS, deadline))}</li>
+     *     </ul>
+     * If both are specified , the earlier is used. Driver derive the remaining-time timeout of each statement from deadline,
+     * and the statement that have expired fail fast with {@link io.jdbd.statement.TimeoutException} before being queued.
+     * <br/>
+     */
+    public static final Option<Long> DEADLINE_MILLIS = Option.from("DEADLINE MILLIS", Long.class);
+
     /**
      * <p>
      * Representing a wait option. For example : transaction wait option.
@@ -351,6 +368,19 @@ public final class Option<T> {
 
     public static final Option<Integer> PREPARE_THRESHOLD = Option.from(Driver.PREPARE_THRESHOLD, Integer.class);
 
+    /**
+     * <p>
+     * This option representing the chunk size of the {@link org.reactivestreams.Publisher} of big column, for example :
+     * {@link io.jdbd.type.Blob} and {@link io.jdbd.type.Clob} that are read from {@link io.jdbd.type.BlobPath} or {@link io.jdbd.type.TextPath}.
+     * The unit is byte for binary and char for text.
+     * <br/>
+     * <p>
+     * This option can be supported by {@link io.jdbd.statement.Statement#setOption(Option, Object)}
+     * and {@link ChunkOption#valueOf(Option)} (the bytes of import and export chunk).
+     * <br/>
+     */
+    public static final Option<Integer> CHUNK_SIZE = Option.from("CHUNK SIZE", Integer.class);
+
     /**
      * @see io.jdbd.result.ResultRowMeta#getOf(int, Option)
      */
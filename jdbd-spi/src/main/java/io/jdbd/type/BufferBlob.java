@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.type;
+
+import io.jdbd.meta.DataType;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * This interface representing the holder of {@link ByteBuffer} {@link Publisher}, the buffer can be direct buffer,
+ * so driver can write the buffer into network buffer or read big column without intermediate byte[].
+ * <br/>
+ * <p>
+ * Application developer can get the instance of this interface by {@link #from(Publisher)} method.
+ * <br/>
+ *
+ * @see io.jdbd.statement.ParametrizedStatement#bind(int, DataType, Object)
+ * @see io.jdbd.result.DataRow#get(int, Class)
+ * @since 1.0
+ */
+public interface BufferBlob extends Blob {
+
+    /**
+     * <p>
+     * The remaining bytes of each {@link ByteBuffer} is the chunk. Subscriber can consume the position of buffer,
+     * but must not modify the content of buffer , the buffer maybe read-only.
+     * <br/>
+     *
+     * @return {@link ByteBuffer} {@link Publisher}
+     */
+    Publisher<ByteBuffer> bufferValue();
+
+    /**
+     * <p>
+     * Copy the remaining bytes of each {@link ByteBuffer} into byte[], for the consumer that only support {@link Blob}.
+     * <br/>
+     *
+     * @return byte[] {@link Publisher}
+     */
+    @Override
+    Publisher<byte[]> value();
+
+    /**
+     * create {@link BufferBlob} instance.
+     *
+     * @param source non-null
+     * @return non-null
+     */
+    static BufferBlob from(Publisher<ByteBuffer> source) {
+        return JdbdTypes.bufferBlobParam(source);
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2023-2043 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jdbd.type;
+
+import io.jdbd.meta.DataType;
+import org.reactivestreams.Publisher;
+
+import java.nio.CharBuffer;
+
+/**
+ * <p>
+ * This interface representing the holder of {@link CharBuffer} {@link Publisher}, so driver can encode the chars
+ * into network buffer or read big column without intermediate {@link String}.
+ * <br/>
+ * <p>
+ * Application developer can get the instance of this interface by {@link #from(Publisher)} method.
+ * <br/>
+ *
+ * @see io.jdbd.statement.ParametrizedStatement#bind(int, DataType, Object)
+ * @see io.jdbd.result.DataRow#get(int, Class)
+ * @since 1.0
+ */
+public interface BufferClob extends Clob {
+
+    /**
+     * <p>
+     * The remaining chars of each {@link CharBuffer} is the chunk. Subscriber can consume the position of buffer,
+     * but must not modify the content of buffer , the buffer maybe read-only.
+     * <br/>
+     *
+     * @return {@link CharBuffer} {@link Publisher}
+     */
+    Publisher<CharBuffer> bufferValue();
+
+    /**
+     * <p>
+     * Copy the remaining chars of each {@link CharBuffer} into {@link String}, for the consumer that only support {@link Clob}.
+     * <br/>
+     *
+     * @return {@link String} {@link Publisher}
+     */
+    @Override
+    Publisher<String> value();
+
+    /**
+     * create {@link BufferClob} instance.
+     *
+     * @param source non-null
+     * @return non-null
+     */
+    static BufferClob from(Publisher<CharBuffer> source) {
+        return JdbdTypes.bufferClobParam(source);
+    }
+
+}
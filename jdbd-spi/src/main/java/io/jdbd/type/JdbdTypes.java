@@ -19,10 +19,15 @@ package io.jdbd.type;
 import io.jdbd.lang.NonNull;
 import io.jdbd.lang.Nullable;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.Objects;
+import java.util.function.Function;
 
 abstract class JdbdTypes {
 
@@ -44,6 +49,20 @@ abstract class JdbdTypes {
         return new JdbdClob(source);
     }
 
+    static BufferBlob bufferBlobParam(@Nullable Publisher<ByteBuffer> source) {
+        if (source == null) {
+            throw new NullPointerException("source must non-null");
+        }
+        return new JdbdBufferBlob(source);
+    }
+
+    static BufferClob bufferClobParam(@Nullable Publisher<CharBuffer> source) {
+        if (source == null) {
+            throw new NullPointerException("source must non-null");
+        }
+        return new JdbdBufferClob(source);
+    }
+
 
     static TextPath textPathParam(boolean deleteOnClose, @Nullable Charset charset, @Nullable Path path) {
         if (charset == null) {
@@ -96,6 +115,148 @@ abstract class JdbdTypes {
     }//JdbdBlob
 
 
+    private static final class JdbdBufferBlob implements BufferBlob {
+
+        private final Publisher<ByteBuffer> source;
+
+        private JdbdBufferBlob(Publisher<ByteBuffer> source) {
+            this.source = source;
+        }
+
+        @NonNull
+        @Override
+        public Publisher<ByteBuffer> bufferValue() {
+            return this.source;
+        }
+
+        @NonNull
+        @Override
+        public Publisher<byte[]> value() {
+            return new MapPublisher<>(this.source, JdbdTypes::readAllBytes);
+        }
+
+    }//JdbdBufferBlob
+
+    private static final class JdbdBufferClob implements BufferClob {
+
+        private final Publisher<CharBuffer> source;
+
+        private JdbdBufferClob(Publisher<CharBuffer> source) {
+            this.source = source;
+        }
+
+        @NonNull
+        @Override
+        public Publisher<CharBuffer> bufferValue() {
+            return this.source;
+        }
+
+        @NonNull
+        @Override
+        public Publisher<String> value() {
+            return new MapPublisher<>(this.source, CharBuffer::toString);
+        }
+
+    }//JdbdBufferClob
+
+    private static byte[] readAllBytes(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+
+    /**
+     * <p>
+     * spi don't depend on reactor, so this class is a simple map operator.
+     * <br/>
+     */
+    private static final class MapPublisher<T, R> implements Publisher<R> {
+
+        private final Publisher<T> source;
+
+        private final Function<T, R> function;
+
+        private MapPublisher(Publisher<T> source, Function<T, R> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super R> actual) {
+            this.source.subscribe(new MapSubscriber<>(actual, this.function));
+        }
+
+    }//MapPublisher
+
+    private static final class MapSubscriber<T, R> implements Subscriber<T>, Subscription {
+
+        private final Subscriber<? super R> actual;
+
+        private final Function<T, R> function;
+
+        private Subscription upstream;
+
+        private boolean done;
+
+        private MapSubscriber(Subscriber<? super R> actual, Function<T, R> function) {
+            this.actual = actual;
+            this.function = function;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription s) {
+            this.upstream = s;
+            this.actual.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(final T item) {
+            if (this.done) {
+                return;
+            }
+            final R value;
+            try {
+                value = this.function.apply(item);
+            } catch (Throwable e) {
+                this.upstream.cancel();
+                onError(e);
+                return;
+            }
+            this.actual.onNext(value);
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            if (this.done) {
+                return;
+            }
+            this.done = true;
+            this.actual.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (this.done) {
+                return;
+            }
+            this.done = true;
+            this.actual.onComplete();
+        }
+
+        @Override
+        public void request(final long n) {
+            this.upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            this.upstream.cancel();
+        }
+
+    }//MapSubscriber
+
+
     private static final class JdbdTextPath implements TextPath {
 
         private final boolean deleteOnClose;